@@ -0,0 +1,472 @@
+package com.dpizarro.libraries.uipickerlibrary;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v7.app.ActionBarActivity;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.Button;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.dpizarro.uipicker.library.picker.PickerUI;
+import com.dpizarro.uipicker.library.picker.PickerUILabelStore;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark of the picker with large lists.
+ * <p>
+ * It loads a dataset of 1k, 100k or 1M items and runs a fixed script on the picker: scripted
+ * flings, smooth scrolls which settle on an item, and slides of the panel. The duration of each
+ * frame is recorded with {@link FrameRecorder}. The time to the first frame, the frames, the
+ * janky frames and the percentiles of each phase are appended to benchmark/summary.csv, and the
+ * duration of each frame is saved in benchmark/frames-*.csv, in the external files directory of
+ * the app. The random values of the script depend only on the size of the dataset, so two runs
+ * with the same size can be compared.
+ * <p>
+ * It can be started without touching the screen:
+ * <pre>
+ * adb shell am start -n com.dpizarro.libraries.uipickerlibrary/.BenchmarkActivity --ei size 100000
+ * adb pull /sdcard/Android/data/com.dpizarro.libraries.uipickerlibrary/files/benchmark
+ * </pre>
+ */
+public class BenchmarkActivity extends ActionBarActivity {
+
+    /**
+     * Size of the dataset to run the benchmark when the activity starts.
+     */
+    public static final String EXTRA_SIZE = "size";
+
+    private static final String LOG_TAG = "PickerUIBenchmark";
+
+    private static final int[] DATASET_SIZES = {1000, 100000, 1000000};
+
+    private static final String[] WORDS = {
+        "Alpha", "Bravo", "Charlie", "Delta", "Echo", "Foxtrot", "Golf", "Hotel", "India",
+        "Juliett", "Kilo", "Lima", "Mike", "November", "Oscar", "Papa", "Quebec", "Romeo", "Sierra",
+        "Tango", "Uniform", "Victor", "Whiskey", "X-ray", "Yankee", "Zulu"
+    };
+
+    /**
+     * Repetitions of each phase. The slides are an even number to end with the panel shown.
+     */
+    private static final int FLINGS   = 10;
+    private static final int SETTLES  = 10;
+    private static final int SLIDES   = 10;
+
+    /**
+     * The fling is a drag of FLING_STEPS moves, FLING_STEP_MS ms apart.
+     */
+    private static final int  FLING_STEPS   = 4;
+    private static final long FLING_STEP_MS = 10;
+
+    private static final int  SETTLE_DURATION_MS = 400;
+    private static final long STEP_TIMEOUT_MS    = 5000;
+
+    /**
+     * A frame is janky if it takes longer than JANK_FACTOR refresh intervals.
+     */
+    private static final float JANK_FACTOR = 1.5f;
+
+    private static final String SUMMARY_HEADER = "date,device,sdk,version,dataset,phase,frames,"
+        + "janky_frames,p50_ms,p90_ms,p99_ms,max_ms,time_to_first_frame_ms,timeouts\n";
+    private static final String FRAMES_HEADER  = "dataset,phase,frame,duration_ms\n";
+
+    private final Handler       mHandler       = new Handler();
+    private final FrameRecorder mFrameRecorder = new FrameRecorder();
+
+    private PickerUI mPickerUI;
+    private ListView mListView;
+    private TextView mStatus;
+    private Button[] mSizeButtons;
+
+    private boolean       mRunning;
+    private int           mDatasetSize;
+    private Random        mRandom;
+    private Runnable      mPendingStep;
+    private int           mTimeouts;
+    private StringBuilder mSummary;
+    private StringBuilder mFrames;
+    private long          mRunTime;
+
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mTimeouts++;
+            continueScript();
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        findViews();
+        setListeners();
+
+        final int size = getIntent().getIntExtra(EXTRA_SIZE, 0);
+        if (size > 0 && savedInstanceState == null) {
+            //Start when the picker has been laid out
+            mPickerUI.post(new Runnable() {
+                @Override
+                public void run() {
+                    startBenchmark(size);
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mRunning = false;
+        mPendingStep = null;
+        mFrameRecorder.stop();
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void findViews() {
+        mPickerUI = (PickerUI) findViewById(R.id.picker_ui_view);
+        mListView = (ListView) mPickerUI
+            .findViewById(com.dpizarro.uipicker.library.R.id.picker_ui_listview);
+        mStatus = (TextView) findViewById(R.id.tv_status);
+        mSizeButtons = new Button[]{
+            (Button) findViewById(R.id.bt_benchmark_1k),
+            (Button) findViewById(R.id.bt_benchmark_100k),
+            (Button) findViewById(R.id.bt_benchmark_1m)
+        };
+    }
+
+    private void setListeners() {
+        for (int i = 0; i < mSizeButtons.length; i++) {
+            final int size = DATASET_SIZES[i];
+            mSizeButtons[i].setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    startBenchmark(size);
+                }
+            });
+        }
+
+        //The script continues when the picker stops on an item or the panel stops sliding
+        mPickerUI.setOnClickItemPickerUIListener(new PickerUI.PickerUIItemClickListener() {
+            @Override
+            public void onItemClickPickerUI(int which, int position, String valueResult) {
+                continueScript();
+            }
+        });
+        mPickerUI.setOnSlideListener(new PickerUI.PickerUISlideListener() {
+            @Override
+            public void onSlideFinishedPickerUI(boolean panelShown) {
+                continueScript();
+            }
+        });
+    }
+
+    private void startBenchmark(final int size) {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mDatasetSize = size;
+        mRandom = new Random(size);
+        mTimeouts = 0;
+        mRunTime = System.currentTimeMillis();
+        mSummary = new StringBuilder();
+        mFrames = new StringBuilder();
+        setButtonsEnabled(false);
+        mStatus.setText(getString(R.string.benchmark_loading, size));
+
+        //The dataset isn't part of the measures
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> items = createDataset(size);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mRunning) {
+                            showDataset(items);
+                        }
+                    }
+                });
+            }
+        }, "PickerUI-benchmark").start();
+    }
+
+    private static List<String> createDataset(int size) {
+        PickerUILabelStore.Builder builder = new PickerUILabelStore.Builder(size);
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            label.setLength(0);
+            label.append(WORDS[i % WORDS.length]).append(' ').append(i);
+            builder.add(label.toString());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Sets the items with the panel shown, and measures the time until the list is drawn.
+     */
+    private void showDataset(final List<String> items) {
+        if (!mPickerUI.isPanelShown()) {
+            waitFor(new Runnable() {
+                @Override
+                public void run() {
+                    showDataset(items);
+                }
+            });
+            mPickerUI.slide();
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        final ViewTreeObserver observer = mListView.getViewTreeObserver();
+        observer.addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                long timeToFirstFrame = System.nanoTime() - startTime;
+
+                //The listener can't be removed while the tree is drawn
+                final ViewTreeObserver.OnDrawListener listener = this;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (observer.isAlive()) {
+                            observer.removeOnDrawListener(listener);
+                        }
+                    }
+                });
+
+                addSummary("first_frame", "", "", "", "", "", "", toMillis(timeToFirstFrame));
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        runFlings();
+                    }
+                });
+            }
+        });
+        mPickerUI.setItems(this, items);
+    }
+
+    private void runFlings() {
+        runPhase("fling", FLINGS, new Runnable() {
+            @Override
+            public void run() {
+                //Two flings forward for each one backward, so the list moves away from the start
+                fling(mRandom.nextInt(3) != 0);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                runSettles();
+            }
+        });
+    }
+
+    private void runSettles() {
+        runPhase("settle", SETTLES, new Runnable() {
+            @Override
+            public void run() {
+                mPickerUI.smoothScrollToItem(mRandom.nextInt(mDatasetSize), SETTLE_DURATION_MS);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                runSlides();
+            }
+        });
+    }
+
+    private void runSlides() {
+        runPhase("slide", SLIDES, new Runnable() {
+            @Override
+            public void run() {
+                mPickerUI.slide();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                finishBenchmark();
+            }
+        });
+    }
+
+    /**
+     * Runs an action several times while the frames are recorded. Each repetition starts when the
+     * previous one has finished.
+     */
+    private void runPhase(String phase, int repetitions, Runnable action, Runnable next) {
+        mStatus.setText(getString(R.string.benchmark_running, phase, mDatasetSize));
+        mFrameRecorder.start();
+        runRepetition(phase, repetitions, action, next);
+    }
+
+    private void runRepetition(final String phase, final int remaining, final Runnable action,
+                               final Runnable next) {
+        if (remaining == 0) {
+            mFrameRecorder.stop();
+            addResults(phase);
+            next.run();
+            return;
+        }
+
+        waitFor(new Runnable() {
+            @Override
+            public void run() {
+                runRepetition(phase, remaining - 1, action, next);
+            }
+        });
+        action.run();
+    }
+
+    /**
+     * Drags the list quickly, with the times of the events, so the list flings as with a finger.
+     *
+     * @param forward if the list moves to the next items
+     */
+    private void fling(boolean forward) {
+        int height = mListView.getHeight();
+        float x = mListView.getWidth() / 2f;
+        float fromY = forward ? height * 0.8f : height * 0.2f;
+        float toY = forward ? height * 0.2f : height * 0.8f;
+
+        long downTime = SystemClock.uptimeMillis();
+        dispatchTouchEvent(downTime, downTime, MotionEvent.ACTION_DOWN, x, fromY);
+        for (int step = 1; step <= FLING_STEPS; step++) {
+            float y = fromY + (toY - fromY) * step / FLING_STEPS;
+            dispatchTouchEvent(downTime, downTime + step * FLING_STEP_MS,
+                MotionEvent.ACTION_MOVE, x, y);
+        }
+        dispatchTouchEvent(downTime, downTime + FLING_STEPS * FLING_STEP_MS,
+            MotionEvent.ACTION_UP, x, toY);
+    }
+
+    private void dispatchTouchEvent(long downTime, long eventTime, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        mListView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * Waits for the picker to finish the current step, or for the timeout.
+     *
+     * @param next the step to run then
+     */
+    private void waitFor(Runnable next) {
+        mPendingStep = next;
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        mHandler.postDelayed(mTimeoutRunnable, STEP_TIMEOUT_MS);
+    }
+
+    private void continueScript() {
+        Runnable next = mPendingStep;
+        if (next == null || !mRunning) {
+            return;
+        }
+        mPendingStep = null;
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        //Out of the callback of the picker
+        mHandler.post(next);
+    }
+
+    private void addResults(String phase) {
+        long maxDuration = (long) (JANK_FACTOR * 1000000000L
+            / getWindowManager().getDefaultDisplay().getRefreshRate());
+        addSummary(phase,
+            String.valueOf(mFrameRecorder.getCount()),
+            String.valueOf(mFrameRecorder.getJankCount(maxDuration)),
+            toMillis(mFrameRecorder.getPercentile(50)),
+            toMillis(mFrameRecorder.getPercentile(90)),
+            toMillis(mFrameRecorder.getPercentile(99)),
+            toMillis(mFrameRecorder.getPercentile(100)),
+            "");
+
+        for (int i = 0; i < mFrameRecorder.getCount(); i++) {
+            mFrames.append(mDatasetSize).append(',').append(phase).append(',').append(i)
+                .append(',').append(toMillis(mFrameRecorder.getDuration(i))).append('\n');
+        }
+    }
+
+    private void addSummary(String phase, String frames, String jankyFrames, String p50,
+                            String p90, String p99, String max, String timeToFirstFrame) {
+        mSummary.append(mRunTime).append(',')
+            .append(Build.MODEL.replace(',', ' ')).append(',')
+            .append(Build.VERSION.SDK_INT).append(',')
+            .append(BuildConfig.VERSION_NAME).append(',')
+            .append(mDatasetSize).append(',')
+            .append(phase).append(',')
+            .append(frames).append(',')
+            .append(jankyFrames).append(',')
+            .append(p50).append(',')
+            .append(p90).append(',')
+            .append(p99).append(',')
+            .append(max).append(',')
+            .append(timeToFirstFrame).append(',')
+            .append(mTimeouts).append('\n');
+    }
+
+    private void finishBenchmark() {
+        mRunning = false;
+        setButtonsEnabled(true);
+
+        File directory = new File(getExternalFilesDir(null) != null
+            ? getExternalFilesDir(null) : getFilesDir(), "benchmark");
+        File summaryFile = new File(directory, "summary.csv");
+        File framesFile = new File(directory, "frames-" + mRunTime + "-" + mDatasetSize + ".csv");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+            boolean newSummary = !summaryFile.exists();
+            write(summaryFile, newSummary ? SUMMARY_HEADER + mSummary : mSummary.toString(),
+                true);
+            write(framesFile, FRAMES_HEADER + mFrames, false);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error while saving the results", e);
+            mStatus.setText(getString(R.string.benchmark_error, e.getMessage()));
+            return;
+        }
+
+        Log.i(LOG_TAG, mSummary.toString());
+        mStatus.setText(getString(R.string.benchmark_done, mSummary, directory));
+    }
+
+    private static void write(File file, String text, boolean append) throws IOException {
+        Writer writer = new FileWriter(file, append);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void setButtonsEnabled(boolean enabled) {
+        for (Button button : mSizeButtons) {
+            button.setEnabled(enabled);
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.US, "%.2f", nanos / 1000000.0);
+    }
+}
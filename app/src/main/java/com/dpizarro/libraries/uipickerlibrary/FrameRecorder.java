@@ -0,0 +1,99 @@
+package com.dpizarro.libraries.uipickerlibrary;
+
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Records the duration of the frames of the main thread with {@link Choreographer}.
+ * <p>
+ * A callback is posted for every frame while it's recording, and the duration of a frame is the
+ * time between two callbacks. A frame which takes longer than the refresh interval of the display
+ * delays the next callback, so it's recorded as a longer duration.
+ */
+class FrameRecorder implements Choreographer.FrameCallback {
+
+    private long[]  durations = new long[1024];
+    private int     count;
+    private long    lastFrameTimeNanos;
+    private boolean recording;
+
+    /**
+     * Starts to record, removing the frames recorded before.
+     */
+    void start() {
+        count = 0;
+        lastFrameTimeNanos = 0;
+        if (!recording) {
+            recording = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stops to record. The frames recorded are kept until the next start.
+     */
+    void stop() {
+        recording = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!recording) {
+            return;
+        }
+        if (lastFrameTimeNanos != 0) {
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = frameTimeNanos - lastFrameTimeNanos;
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * @return the number of frames recorded
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @param frame the index of the frame
+     * @return the duration of the frame in nanoseconds
+     */
+    long getDuration(int frame) {
+        return durations[frame];
+    }
+
+    /**
+     * @param maxDurationNanos the maximum duration of a smooth frame
+     * @return the number of frames which took longer
+     */
+    int getJankCount(long maxDurationNanos) {
+        int jankCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (durations[i] > maxDurationNanos) {
+                jankCount++;
+            }
+        }
+        return jankCount;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the duration in nanoseconds of the frame in the percentile, or 0 if there aren't
+     * frames
+     */
+    long getPercentile(int percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(durations, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
@@ -1,5 +1,6 @@
 package com.dpizarro.libraries.uipickerlibrary;
 
+import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.support.v7.app.ActionBarActivity;
@@ -26,6 +27,7 @@ public class MainActivity extends ActionBarActivity {
     private CheckBox mItemsClickables;
     private CheckBox mAutoDismiss;
     private Button btSlide;
+    private Button btBenchmark;
     private int currentPosition = -1;
     private List<String> options;
 
@@ -62,6 +64,7 @@ public class MainActivity extends ActionBarActivity {
 
     private void findViews() {
         btSlide = (Button) findViewById(R.id.bt_slide);
+        btBenchmark = (Button) findViewById(R.id.bt_benchmark);
         mPickerUI = (PickerUI) findViewById(R.id.picker_ui_view);
         mRandomColor = (CheckBox) findViewById(R.id.cb_random_color);
         mUseBlur = (CheckBox) findViewById(R.id.cb_use_blur);
@@ -85,18 +88,27 @@ public class MainActivity extends ActionBarActivity {
                                                       .withBackgroundColor(randomColor)
                                                       .withItemsClickables(
                                                               mItemsClickables.isChecked())
+                                                      .withUseBlur(mUseBlur.isChecked())
                                                       .build();
 
                 mPickerUI.setSettings(pickerUISettings);
 
+                //slide() toggles the panel, so it would hide the panel shown
                 if(currentPosition==-1) {
-                    mPickerUI.slide();
+                    mPickerUI.slide(PickerUI.SLIDE.UP);
                 }
-                else{
+                else if(!mPickerUI.isPanelShown()) {
                     mPickerUI.slide(currentPosition);
                 }
             }
         });
+
+        btBenchmark.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startActivity(new Intent(MainActivity.this, BenchmarkActivity.class));
+            }
+        });
     }
 
     private int getRandomColor() {
@@ -0,0 +1,125 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Releases the memory of the caches of the pickers when the system asks for it.
+ * <p>
+ * The caches shared by all the pickers ({@link FontCache}, {@link IconCache} and every {@link
+ * PickerUIRowPool}, which can be shared by several panels) are trimmed by one callback registered
+ * once in the application, so each of them is trimmed once per event. The caches of each {@link
+ * PickerUI} are trimmed by the picker while it's attached. All of them are filled again when they
+ * are needed.
+ */
+class CacheTrimmer {
+
+    private static boolean registered;
+
+    /**
+     * The pools alive, without keeping them in memory. Only used in the main thread.
+     */
+    private static final WeakHashMap<PickerUIRowPool, Boolean> rowPools
+        = new WeakHashMap<PickerUIRowPool, Boolean>();
+
+    private CacheTrimmer() {
+    }
+
+    /**
+     * Registers the callback of the shared caches, if it isn't registered yet. Must be called in
+     * the main thread.
+     *
+     * @param context any context, its application context is used
+     */
+    static void register(Context context) {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                FontCache.trimMemory(level);
+                IconCache.trimMemory(level);
+                //Copied, a pool can't be created while they are trimmed
+                for (PickerUIRowPool rowPool : new ArrayList<PickerUIRowPool>(rowPools.keySet())) {
+                    rowPool.trimMemory(level);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                onTrimMemory(TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * Adds a pool to the caches trimmed by the callback. Must be called in the main thread.
+     *
+     * @param rowPool the pool, which is trimmed until it's garbage collected
+     */
+    static void track(PickerUIRowPool rowPool) {
+        rowPools.put(rowPool, Boolean.TRUE);
+    }
+
+    /**
+     * @param level the level given to {@link ComponentCallbacks2#onTrimMemory(int)}
+     * @return if the caches must be emptied: the process is likely to be killed, or the system is
+     * running out of memory
+     */
+    static boolean shouldClear(int level) {
+        return level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+            || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+    }
+
+    /**
+     * @param level the level given to {@link ComponentCallbacks2#onTrimMemory(int)}
+     * @return if the caches must be reduced: the UI isn't visible, or memory is getting low
+     */
+    static boolean shouldTrim(int level) {
+        return level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+    }
+
+    /**
+     * Removes the least recently used half of the entries of a cache. {@link LruCache#trimToSize}
+     * isn't available in API 16.
+     *
+     * @param cache the cache to trim
+     */
+    static <K, V> void trimToHalf(LruCache<K, V> cache) {
+        int targetSize = cache.size() / 2;
+        //The snapshot is ordered from the least recently used entry
+        for (K key : cache.snapshot().keySet()) {
+            if (cache.size() <= targetSize) {
+                break;
+            }
+            cache.remove(key);
+        }
+    }
+}
@@ -22,4 +22,14 @@ class FontCache {
         }
         return tf;
     }
+
+    /**
+     * Removes the fonts when memory is low. The fonts in use are still referenced by their
+     * adapters, and the others are created again when needed.
+     */
+    static void trimMemory(int level) {
+        if (CacheTrimmer.shouldTrim(level)) {
+            fontCache.clear();
+        }
+    }
 }
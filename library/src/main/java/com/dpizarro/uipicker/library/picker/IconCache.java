@@ -0,0 +1,184 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.dpizarro.uipicker.library.R;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Cache of the icons shown next to the labels of the rows. It is shared by all the {@link
+ * PickerUI} of the process.
+ * <p>
+ * Bitmaps are loaded by a {@link PickerUI.PickerUIIconProvider} in a small background pool and
+ * kept in a LRU bounded by size. If a row is recycled before its icon is loaded, the load is
+ * cancelled.
+ */
+class IconCache {
+
+    private static final int POOL_SIZE = 2;
+
+    /**
+     * Use 1/16th of the available memory for this cache (in kilobytes).
+     */
+    private static final int CACHE_SIZE = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+
+    private static final LruCache<String, Bitmap> iconCache =
+        new LruCache<String, Bitmap>(CACHE_SIZE) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final ExecutorService executor = Executors
+        .newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PickerUI-icon-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    /**
+     * Sets in the {@link ImageView} the icon identified by the key. If it isn't in memory, it is
+     * loaded in background and the view is updated when it's ready.
+     *
+     * @param imageView the view of the row
+     * @param key       the key of the icon, given by the provider
+     * @param provider  the provider to load the icon if it isn't cached
+     * @param size      the size in pixels of the icon
+     */
+    static void load(ImageView imageView, String key, PickerUI.PickerUIIconProvider provider,
+                     int size) {
+        IconTask currentTask = (IconTask) imageView.getTag(R.id.pickerui_icon_task);
+        if (currentTask != null) {
+            if (currentTask.key.equals(key)) {
+                //The same icon is already being loaded for this row
+                return;
+            }
+            currentTask.cancel();
+        }
+
+        Bitmap bitmap = iconCache.get(key);
+        if (bitmap != null) {
+            imageView.setTag(R.id.pickerui_icon_task, null);
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+
+        imageView.setImageDrawable(null);
+        IconTask task = new IconTask(imageView, key, provider, size);
+        imageView.setTag(R.id.pickerui_icon_task, task);
+        task.future = executor.submit(task);
+    }
+
+    /**
+     * Removes icons from memory when the system asks for it. They are loaded again when needed.
+     *
+     * @param level the level given to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    static void trimMemory(int level) {
+        if (CacheTrimmer.shouldClear(level)) {
+            iconCache.evictAll();
+        }
+        else if (CacheTrimmer.shouldTrim(level)) {
+            CacheTrimmer.trimToHalf(iconCache);
+        }
+    }
+
+    /**
+     * Cancels the pending load of the view, if any.
+     *
+     * @param imageView the view of the row
+     */
+    static void cancel(ImageView imageView) {
+        IconTask currentTask = (IconTask) imageView.getTag(R.id.pickerui_icon_task);
+        if (currentTask != null) {
+            currentTask.cancel();
+            imageView.setTag(R.id.pickerui_icon_task, null);
+        }
+    }
+
+    /**
+     * Task to load an icon in background and to set it in the view in the main thread.
+     */
+    private static class IconTask implements Runnable {
+
+        private final ImageView                     imageView;
+        private final String                        key;
+        private final PickerUI.PickerUIIconProvider provider;
+        private final int                           size;
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        IconTask(ImageView imageView, String key, PickerUI.PickerUIIconProvider provider,
+                 int size) {
+            this.imageView = imageView;
+            this.key = key;
+            this.provider = provider;
+            this.size = size;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            final Bitmap bitmap = provider.loadIcon(key, size);
+            if (bitmap == null || cancelled) {
+                return;
+            }
+            iconCache.put(key, bitmap);
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    //The row could have been recycled while the icon was loading
+                    if (!cancelled && imageView.getTag(R.id.pickerui_icon_task) == IconTask.this) {
+                        imageView.setTag(R.id.pickerui_icon_task, null);
+                        imageView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.util.TypedValue;
+import android.widget.TextView;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Text appearance of the items, resolved once from a style.
+ * <p>
+ * {@link TextView#setTextAppearance(Context, int)} reads the style each time it's called. This
+ * class reads it once, and only changes the properties of the TextView which are different.
+ */
+class ItemTextStyle {
+
+    /**
+     * Attributes to read from the style. They must be sorted.
+     */
+    private static final int[] ATTRS = {
+        android.R.attr.textSize,
+        android.R.attr.textStyle,
+        android.R.attr.textColor
+    };
+
+    private final float          textSize;
+    private final int            textStyle;
+    private final ColorStateList textColor;
+
+    private ItemTextStyle(float textSize, int textStyle, ColorStateList textColor) {
+        this.textSize = textSize;
+        this.textStyle = textStyle;
+        this.textColor = textColor;
+    }
+
+    /**
+     * Reads the text appearance of a style.
+     *
+     * @param context  the context to resolve the style
+     * @param styleRes the style to read
+     * @return the resolved style
+     */
+    static ItemTextStyle resolve(Context context, int styleRes) {
+        TypedArray typedArray = context.obtainStyledAttributes(styleRes, ATTRS);
+        try {
+            return new ItemTextStyle(typedArray.getDimension(0, 0),
+                typedArray.getInt(1, Typeface.NORMAL),
+                typedArray.getColorStateList(2));
+        } finally {
+            typedArray.recycle();
+        }
+    }
+
+    float getTextSize() {
+        return textSize;
+    }
+
+    /**
+     * Applies the style to the TextView.
+     *
+     * @param textView the TextView of the item
+     * @param typeFace the font of the items, or null to use the default font with the text style
+     */
+    void apply(TextView textView, Typeface typeFace) {
+        apply(textView, typeFace, textSize);
+    }
+
+    /**
+     * Applies the style to the TextView with another text size, like the size which fits the
+     * width of the row.
+     *
+     * @param textView the TextView of the item
+     * @param typeFace the font of the items, or null to use the default font with the text style
+     * @param textSize the text size in pixels, or 0 to keep the current size
+     */
+    void apply(TextView textView, Typeface typeFace, float textSize) {
+        if (textSize > 0 && textView.getTextSize() != textSize) {
+            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, textSize);
+        }
+
+        Typeface newTypeFace = typeFace != null ? typeFace : Typeface.defaultFromStyle(textStyle);
+        if (textView.getTypeface() != newTypeFace) {
+            textView.setTypeface(newTypeFace);
+        }
+
+        if (textColor != null && textView.getTextColors() != textColor) {
+            textView.setTextColor(textColor);
+        }
+    }
+
+    /**
+     * Applies the size and the font of the style to a paint, to measure the text out of a
+     * TextView.
+     *
+     * @param paint    the paint to measure the text
+     * @param typeFace the font of the items, or null to use the default font with the text style
+     */
+    void apply(TextPaint paint, Typeface typeFace) {
+        if (textSize > 0) {
+            paint.setTextSize(textSize);
+        }
+        paint.setTypeface(typeFace != null ? typeFace : Typeface.defaultFromStyle(textStyle));
+    }
+}
@@ -1,21 +1,32 @@
 package com.dpizarro.uipicker.library.picker;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewTreeObserver;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 
 import com.dpizarro.uipicker.library.R;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /*
@@ -38,11 +49,21 @@ public class PickerUI extends LinearLayout {
     private static final String LOG_TAG = PickerUI.class.getSimpleName();
 
     private boolean itemsClickables = PickerUISettings.DEFAULT_ITEMS_CLICKABLES;
+    private boolean wheelMode       = PickerUISettings.DEFAULT_WHEEL_MODE;
+    private boolean cyclic          = PickerUISettings.DEFAULT_CYCLIC;
+    private boolean multiSelect     = PickerUISettings.DEFAULT_MULTI_SELECT;
+    private boolean multiLine       = PickerUISettings.DEFAULT_MULTI_LINE;
+    private boolean autoFitText     = PickerUISettings.DEFAULT_AUTO_FIT_TEXT;
+    private boolean sortedByLocale  = PickerUISettings.DEFAULT_SORTED_BY_LOCALE;
+    private boolean useBlur         = PickerUISettings.DEFAULT_USE_BLUR;
+    private int     visibleRows     = PickerUISettings.DEFAULT_VISIBLE_ROWS;
+    private int     rowHeight;
 
     private PickerUIItemClickListener mPickerUIListener;
     private PickerUIListView          mPickerUIListView;
     private Context                   mContext;
     private List<String>              items;
+    private ArrayList<String>         ownItems;
     private RelativeLayout            mMainLayoutPickerUI;
     private int                       position;
     private int                       backgroundColorPanel;
@@ -51,6 +72,34 @@ public class PickerUI extends LinearLayout {
     private int                       mColorTextNoCenterListView;
     private String                    typeFacePath;
     private PickerUISettings          mPickerUISettings;
+    private PickerUIBlur              mPickerUIBlur;
+    private PickerUISlideListener     mPickerUISlideListener;
+    private boolean                   panelShown;
+    private boolean                   animating;
+    private int                       animationTime;
+    private final ArrayList<Runnable> pendingActions = new ArrayList<Runnable>();
+    private PickerUIUpdateQueue       mUpdateQueue;
+    private PickerUILevels            mLevels;
+    private PickerUILevelListener     mPickerUILevelListener;
+
+    /**
+     * Releases the memory of the caches of this panel while it's attached.
+     */
+    private final ComponentCallbacks2 mTrimMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
+        }
+    };
 
     /**
      * Default constructor
@@ -112,6 +161,25 @@ public class PickerUI extends LinearLayout {
         View view = inflater.inflate(R.layout.pickerui, this, true);
         mPickerUIListView = (PickerUIListView) view.findViewById(R.id.picker_ui_listview);
         mMainLayoutPickerUI = (RelativeLayout) view.findViewById(R.id.picker_main_layout);
+        CacheTrimmer.register(mContext);
+        mUpdateQueue = new PickerUIUpdateQueue(new PickerUIUpdateQueue.UpdateListener() {
+            @Override
+            public void onUpdates(List<String> items, SparseArray<String> changes) {
+                applyUpdates(items, changes);
+            }
+        });
+        mPickerUIBlur = new PickerUIBlur(mMainLayoutPickerUI,
+            (ImageView) view.findViewById(R.id.picker_blur_background));
+        setBlurRadius(PickerUISettings.DEFAULT_BLUR_RADIUS);
+        setBlurDownScaleFactor(PickerUISettings.DEFAULT_BLUR_DOWNSCALE_FACTOR);
+
+        rowHeight = getResources().getDimensionPixelSize(R.dimen.height_normal_item_pickerui);
+        setGeometry();
+
+        //The panel is hidden but laid out, so it's ready when it slides up. To show it inline,
+        //slide(SLIDE.UP) must be called once
+        animationTime = getResources().getInteger(R.integer.animation_time);
+        mMainLayoutPickerUI.setVisibility(View.INVISIBLE);
 
         setItemsClickables(itemsClickables);
     }
@@ -128,6 +196,30 @@ public class PickerUI extends LinearLayout {
                     .getBoolean(R.styleable.PickerUI_itemsClickables,
                         PickerUISettings.DEFAULT_ITEMS_CLICKABLES);
                 typeFacePath = typedArray.getString(R.styleable.PickerUI_typeFacePath);
+                setWheelMode(typedArray.getBoolean(R.styleable.PickerUI_wheelMode,
+                    PickerUISettings.DEFAULT_WHEEL_MODE));
+                setCyclic(typedArray.getBoolean(R.styleable.PickerUI_cyclic,
+                    PickerUISettings.DEFAULT_CYCLIC));
+                setMultiSelect(typedArray.getBoolean(R.styleable.PickerUI_multiSelect,
+                    PickerUISettings.DEFAULT_MULTI_SELECT));
+                rowHeight = typedArray.getDimensionPixelSize(R.styleable.PickerUI_rowHeight,
+                    rowHeight);
+                visibleRows = getOddVisibleRows(typedArray.getInt(R.styleable.PickerUI_visibleRows,
+                    PickerUISettings.DEFAULT_VISIBLE_ROWS));
+                setGeometry();
+                setMultiLine(typedArray.getBoolean(R.styleable.PickerUI_multiLine,
+                    PickerUISettings.DEFAULT_MULTI_LINE));
+                setAutoFitText(typedArray.getBoolean(R.styleable.PickerUI_autoFitText,
+                    PickerUISettings.DEFAULT_AUTO_FIT_TEXT));
+                setSortedByLocale(typedArray.getBoolean(R.styleable.PickerUI_sortedByLocale,
+                    PickerUISettings.DEFAULT_SORTED_BY_LOCALE));
+                setUseBlur(typedArray.getBoolean(R.styleable.PickerUI_blur,
+                    PickerUISettings.DEFAULT_USE_BLUR));
+                setBlurRadius(typedArray.getInt(R.styleable.PickerUI_blur_radius,
+                    PickerUISettings.DEFAULT_BLUR_RADIUS));
+                setBlurDownScaleFactor(typedArray.getInt(R.styleable.PickerUI_blur_downScaleFactor,
+                    PickerUISettings.DEFAULT_BLUR_DOWNSCALE_FACTOR));
+                setBlurFilterColor(typedArray.getColor(R.styleable.PickerUI_blur_FilterColor, 0));
                 backgroundColorPanel = typedArray.getColor(R.styleable.PickerUI_backgroundColor,
                     getResources().getColor(R.color.background_panel_pickerui));
                 colorLines = typedArray.getColor(R.styleable.PickerUI_linesCenterColor,
@@ -154,7 +246,8 @@ public class PickerUI extends LinearLayout {
     }
 
     /**
-     * Slide the panel depending on the current state.
+     * Slide the panel depending on the current state: down if it's shown, up otherwise. The panel
+     * is hidden until it slides up for the first time.
      * If slide up, the position is the half of the elements.
      */
     public void slide() {
@@ -166,13 +259,18 @@ public class PickerUI extends LinearLayout {
     }
 
     /**
-     * Slide the panel depending on the current state.
+     * Slide the panel depending on the current state: down if it's shown, up otherwise.
      * If slide up, the position is the value selected.
      *
      * @param position the position to set in the center of the panel.
      */
     public void slide(final int position) {
-        slideUp(position);
+        if (panelShown) {
+            slideDown();
+        }
+        else {
+            slideUp(position);
+        }
     }
 
     /**
@@ -188,6 +286,16 @@ public class PickerUI extends LinearLayout {
             }
             slideUp(position);
         }
+        else if (slide == SLIDE.DOWN) {
+            slideDown();
+        }
+    }
+
+    /**
+     * @return if the panel is shown, or it's sliding up
+     */
+    public boolean isPanelShown() {
+        return panelShown;
     }
 
     /**
@@ -196,9 +304,297 @@ public class PickerUI extends LinearLayout {
      * @param position the position to set in the center of the panel.
      */
     private void slideUp(int position) {
-        //Render to do the blur effect
+        slideUp(position, true);
+    }
+
+    /**
+     * Show the panel to the position selected. The panel slides up in a hardware layer, only
+     * changing its translation, so the list isn't laid out or drawn again while it moves.
+     *
+     * @param position the position to set in the center of the panel.
+     * @param animate  if the panel slides up or is shown directly
+     */
+    private void slideUp(int position, boolean animate) {
         this.position = position;
         showPanelPickerUI();
+        showPanel(animate);
+    }
+
+    /**
+     * Shows the panel where the list is now.
+     *
+     * @param animate if the panel slides up or is shown directly
+     */
+    private void showPanel(boolean animate) {
+        //The blur is done in background and shown when it's ready
+        if (useBlur) {
+            mPickerUIBlur.show(animate && (!panelShown || animating));
+        }
+
+        if (panelShown && !animating) {
+            return;
+        }
+        panelShown = true;
+
+        mMainLayoutPickerUI.animate().cancel();
+        mMainLayoutPickerUI.setVisibility(View.VISIBLE);
+        if (!animate) {
+            mMainLayoutPickerUI.setTranslationY(0);
+            onSlideFinished();
+            return;
+        }
+
+        if (!animating) {
+            mMainLayoutPickerUI.setTranslationY(getPanelHeight());
+        }
+        animating = true;
+        mMainLayoutPickerUI.animate()
+            .translationY(0)
+            .setDuration(animationTime)
+            .setInterpolator(new DecelerateInterpolator())
+            .withLayer()
+            .setListener(mSlideAnimatorListener);
+    }
+
+    /**
+     * Hide the panel. The panel slides down in a hardware layer like in {@link #slideUp(int,
+     * boolean)}.
+     */
+    private void slideDown() {
+        if (!panelShown) {
+            return;
+        }
+        panelShown = false;
+        animating = true;
+
+        mMainLayoutPickerUI.animate().cancel();
+        mMainLayoutPickerUI.animate()
+            .translationY(getPanelHeight())
+            .setDuration(animationTime)
+            .setInterpolator(new AccelerateInterpolator())
+            .withLayer()
+            .setListener(mSlideAnimatorListener);
+    }
+
+    private final AnimatorListenerAdapter mSlideAnimatorListener = new AnimatorListenerAdapter() {
+        private boolean cancelled;
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            cancelled = false;
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            cancelled = true;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            //A cancelled animation is replaced by the one in the other direction
+            if (!cancelled) {
+                onSlideFinished();
+            }
+        }
+    };
+
+    /**
+     * Called when the panel has slid up or down. The work delayed during the animation is done
+     * now.
+     */
+    private void onSlideFinished() {
+        animating = false;
+        if (!panelShown) {
+            mMainLayoutPickerUI.setVisibility(View.INVISIBLE);
+            mPickerUIBlur.hide();
+        }
+
+        if (!pendingActions.isEmpty()) {
+            Runnable[] actions = pendingActions.toArray(new Runnable[pendingActions.size()]);
+            pendingActions.clear();
+            for (Runnable action : actions) {
+                action.run();
+            }
+            if (panelShown) {
+                showPanelPickerUI();
+            }
+        }
+
+        if (mPickerUISlideListener != null) {
+            mPickerUISlideListener.onSlideFinishedPickerUI(panelShown);
+        }
+    }
+
+    /**
+     * Runs the action now, or when the panel stops sliding, to not change the items in the
+     * middle of the animation.
+     */
+    private void runWhenNotSliding(Runnable action) {
+        if (animating) {
+            pendingActions.add(action);
+        }
+        else {
+            action.run();
+        }
+    }
+
+    private int getPanelHeight() {
+        int height = mMainLayoutPickerUI.getHeight();
+        if (height == 0) {
+            height = mMainLayoutPickerUI.getLayoutParams().height;
+        }
+        return height;
+    }
+
+    /**
+     * Sets the height of the rows. The height of the panel and the lines of the center depend on
+     * it.
+     *
+     * @param height the resource of the dimension or the height in pixels
+     */
+    public void setRowHeight(int height) {
+        int newRowHeight = getDimension(height);
+        if (newRowHeight > 0 && newRowHeight != rowHeight) {
+            rowHeight = newRowHeight;
+            setGeometry();
+        }
+    }
+
+    /**
+     * Sets the number of visible rows. The height of the panel and the lines of the center depend
+     * on it, and the list has the half of them as empty rows at each end.
+     *
+     * @param visibleRows the number of rows. If it's even, one more row is shown to have a center.
+     */
+    public void setVisibleRows(int visibleRows) {
+        int newVisibleRows = getOddVisibleRows(visibleRows);
+        if (newVisibleRows != this.visibleRows) {
+            this.visibleRows = newVisibleRows;
+            setGeometry();
+        }
+    }
+
+    /**
+     * Method to enable rows with several lines of text. Each row is as high as its text needs, with
+     * the row height as minimum, instead of ellipsizing the text. The heights are measured once
+     * for each item and width.
+     *
+     * @param multiLine indicates whether the rows can have several lines or not
+     */
+    public void setMultiLine(boolean multiLine) {
+        this.multiLine = multiLine;
+        if (mPickerUIListView != null) {
+            mPickerUIListView.setMultiLine(multiLine);
+        }
+    }
+
+    /**
+     * Method to enable the auto-fit mode. The text of an item which doesn't fit the width of the
+     * row is made smaller, instead of ellipsized. The size is searched once for each item, tier
+     * and width. It doesn't apply to the rows with several lines.
+     *
+     * @param autoFitText indicates whether the auto-fit mode is enabled or not
+     */
+    public void setAutoFitText(boolean autoFitText) {
+        this.autoFitText = autoFitText;
+        if (mPickerUIListView != null) {
+            mPickerUIListView.setAutoFitText(autoFitText);
+        }
+    }
+
+    private static int getOddVisibleRows(int visibleRows) {
+        return Math.max(1, visibleRows % 2 == 0 ? visibleRows + 1 : visibleRows);
+    }
+
+    /**
+     * Sets the height of the panel and the position of the lines of the center from the height
+     * and the number of the rows, instead of the fixed dimensions of the layout.
+     */
+    private void setGeometry() {
+        int rowPitch = rowHeight + mPickerUIListView.getDividerHeight();
+        int centerTop = (visibleRows / 2) * rowPitch;
+
+        mMainLayoutPickerUI.getLayoutParams().height = visibleRows * rowPitch;
+        ((MarginLayoutParams) mMainLayoutPickerUI.findViewById(R.id.picker_line_top)
+            .getLayoutParams()).topMargin = centerTop;
+        ((MarginLayoutParams) mMainLayoutPickerUI.findViewById(R.id.picker_line_bottom)
+            .getLayoutParams()).topMargin = centerTop + rowHeight;
+        mMainLayoutPickerUI.requestLayout();
+
+        mPickerUIListView.setGeometry(rowHeight, visibleRows);
+    }
+
+    /**
+     * Scrolls smoothly until the item is in the center of the panel. Calls in the same frame are
+     * merged into one animation, and the animation is cancelled if the user touches the panel.
+     * When it finishes, the item is selected as if the user had scrolled to it.
+     *
+     * @param position   the position of the item
+     * @param durationMs the duration of the animation in milliseconds
+     */
+    public void smoothScrollToItem(int position, int durationMs) {
+        if (items != null && position >= 0 && position < items.size()) {
+            mPickerUIListView.smoothScrollToItem(position, durationMs);
+        }
+    }
+
+    /**
+     * Method to enable the blur effect of the background of the panel. The content under the panel
+     * is blurred in background when the panel slides up, and it's cached until the content
+     * changes.
+     *
+     * @param useBlur the behaviour selected for the panel
+     */
+    public void setUseBlur(boolean useBlur) {
+        this.useBlur = useBlur;
+        if (!useBlur) {
+            mPickerUIBlur.hide();
+            mPickerUIBlur.invalidate();
+        }
+    }
+
+    /**
+     * Sets the radius of the blur effect.
+     *
+     * @param radius the radius, between blur_radius_min and blur_radius_max
+     */
+    public void setBlurRadius(int radius) {
+        mPickerUIBlur.setRadius(clamp(radius, R.integer.blur_radius_min,
+            R.integer.blur_radius_max));
+    }
+
+    /**
+     * Sets how much the background is reduced before doing the blur. A bigger factor is faster
+     * and blurs more.
+     *
+     * @param downScaleFactor the factor, between blur_downscale_min and blur_downscale_max
+     */
+    public void setBlurDownScaleFactor(int downScaleFactor) {
+        mPickerUIBlur.setDownScaleFactor(clamp(downScaleFactor, R.integer.blur_downscale_min,
+            R.integer.blur_downscale_max));
+    }
+
+    /**
+     * Sets the color drawn over the blurred background.
+     *
+     * @param color the color of the filter, with alpha, or 0 to not apply any filter
+     */
+    public void setBlurFilterColor(int color) {
+        mPickerUIBlur.setFilterColor(color != 0 ? getColor(color) : 0);
+    }
+
+    /**
+     * Removes the cached blurred background, when the content under the panel has changed in a way
+     * the panel can't detect, like an animation.
+     */
+    public void invalidateBlur() {
+        mPickerUIBlur.invalidate();
+    }
+
+    private int clamp(int value, int minRes, int maxRes) {
+        Resources resources = getResources();
+        return Math.max(resources.getInteger(minRes),
+            Math.min(resources.getInteger(maxRes), value));
     }
 
     /**
@@ -208,6 +604,7 @@ public class PickerUI extends LinearLayout {
      */
     public void setBackgroundColorPanel(int color) {
         backgroundColorPanel = color;
+        setBackgroundPanel();
     }
 
     /**
@@ -217,6 +614,7 @@ public class PickerUI extends LinearLayout {
      */
     public void setLinesColor(int color) {
         colorLines = color;
+        setBackgroundLines();
     }
 
     /**
@@ -231,9 +629,183 @@ public class PickerUI extends LinearLayout {
         }
     }
 
+    /**
+     * Method to enable the wheel mode. Items are rotated, scaled and faded smoothly depending on
+     * their distance to the center, instead of using a different style for each row.
+     *
+     * @param wheelMode the style selected for items
+     */
+    public void setWheelMode(boolean wheelMode) {
+        this.wheelMode = wheelMode;
+        if (mPickerUIListView != null) {
+            mPickerUIListView.setWheelMode(wheelMode);
+        }
+    }
+
+    /**
+     * Method to enable the cyclic mode. When the user scrolls past the last item, the list
+     * continues with the first one, and vice versa. The items aren't repeated in memory.
+     *
+     * @param cyclic the behaviour selected for the list
+     */
+    public void setCyclic(boolean cyclic) {
+        this.cyclic = cyclic;
+        if (mPickerUIListView != null) {
+            mPickerUIListView.setCyclic(cyclic);
+        }
+    }
+
+    /**
+     * Method to sort the items by the collation of the default locale. The collation keys are
+     * computed once in a background thread and kept, so when the items are updated only the new
+     * and changed items are sorted again. Until the first sort finishes, the items are shown in
+     * their order. Each key keeps the text of its item, so with a {@link PickerUILabelStore} the
+     * sorted mode needs the memory of a list of Strings.
+     * <p>
+     * The positions given to the listeners are still the indexes of the items in the list set.
+     *
+     * @param sortedByLocale indicates whether the items are sorted or not
+     */
+    public void setSortedByLocale(boolean sortedByLocale) {
+        this.sortedByLocale = sortedByLocale;
+        if (mPickerUIListView != null) {
+            mPickerUIListView.setSortedByLocale(sortedByLocale);
+        }
+    }
+
+    /**
+     * Method to enable the multi-select mode. Clicking an item selects or deselects it. See {@link
+     * PickerUI#setOnSelectionChangedListener(PickerUISelectionListener)}
+     *
+     * @param multiSelect the behaviour selected for items
+     */
+    public void setMultiSelect(boolean multiSelect) {
+        this.multiSelect = multiSelect;
+        if (mPickerUIListView != null) {
+            mPickerUIListView.setMultiSelect(multiSelect);
+        }
+    }
+
+    /**
+     * Selects the items in the range [fromIndex, toIndex) in multi-select mode.
+     *
+     * @param fromIndex index of the first item
+     * @param toIndex   index after the last item
+     */
+    public void selectItems(int fromIndex, int toIndex) {
+        mPickerUIListView.setItemsSelected(fromIndex, toIndex, true);
+    }
+
+    /**
+     * Deselects the items in the range [fromIndex, toIndex) in multi-select mode.
+     *
+     * @param fromIndex index of the first item
+     * @param toIndex   index after the last item
+     */
+    public void deselectItems(int fromIndex, int toIndex) {
+        mPickerUIListView.setItemsSelected(fromIndex, toIndex, false);
+    }
+
+    /**
+     * Selects all the items in multi-select mode.
+     */
+    public void selectAllItems() {
+        if (items != null) {
+            selectItems(0, items.size());
+        }
+    }
+
+    /**
+     * Deselects all the items in multi-select mode.
+     */
+    public void clearSelection() {
+        BitSet selectedItems = mPickerUIListView.getSelectedItems();
+        if (!selectedItems.isEmpty()) {
+            //Only the runs of selected items are notified
+            deselectItems(selectedItems.nextSetBit(0), selectedItems.length());
+        }
+    }
+
+    /**
+     * @param position Position of the item.
+     * @return if the item is selected in multi-select mode
+     */
+    public boolean isItemSelected(int position) {
+        return position >= 0 && mPickerUIListView.getSelectedItems().get(position);
+    }
+
+    /**
+     * @return the number of items selected in multi-select mode
+     */
+    public int getSelectedItemsCount() {
+        return mPickerUIListView.getSelectedItems().cardinality();
+    }
+
+    /**
+     * Get the positions of the items selected in multi-select mode.
+     *
+     * @return a copy of the selection, with a bit set for each selected item
+     */
+    public BitSet getSelectedItems() {
+        return (BitSet) mPickerUIListView.getSelectedItems().clone();
+    }
+
+    /**
+     * Enables or disables the items in the range [fromIndex, toIndex). Disabled items can't be
+     * clicked and, when the user stops scrolling on one of them, the closest enabled item is
+     * selected.
+     *
+     * @param fromIndex index of the first item
+     * @param toIndex   index after the last item
+     * @param enabled   the state of the items
+     */
+    public void setItemsEnabled(int fromIndex, int toIndex, boolean enabled) {
+        mPickerUIListView.setItemsEnabled(fromIndex, toIndex, enabled);
+    }
+
+    /**
+     * Enables or disables an item. See {@link PickerUI#setItemsEnabled(int, int, boolean)}
+     *
+     * @param position Position of the item.
+     * @param enabled  the state of the item
+     */
+    public void setItemEnabled(int position, boolean enabled) {
+        setItemsEnabled(position, position + 1, enabled);
+    }
+
+    /**
+     * @param position Position of the item.
+     * @return if the item is enabled
+     */
+    public boolean isItemEnabled(int position) {
+        return position >= 0 && !mPickerUIListView.getDisabledItems().get(position);
+    }
+
+    /**
+     * Filters the items, showing only the items which contain the query, ignoring case. The filter
+     * runs in background and the results are shown as they are found, keeping in the center the
+     * closest item to the current one. Positions given to the listeners are still the positions in
+     * the whole list of items.
+     *
+     * @param query the text to search, or null to show all the items
+     */
+    public void setFilter(String query) {
+        mPickerUIListView.setFilter(query);
+    }
+
+    /**
+     * @return the current query of the filter, or null if the items aren't filtered
+     */
+    public String getFilter() {
+        return mPickerUIListView.getFilter();
+    }
+
     private void setTextColorsListView() {
-        setColorTextCenter(mColorTextCenterListView);
-        setColorTextNoCenter(mColorTextNoCenterListView);
+        if (mPickerUIListView != null && mPickerUIListView.getPickerUIAdapter() != null) {
+            mPickerUIListView.getPickerUIAdapter().setColorTextCenter(mColorTextCenterListView);
+            mPickerUIListView.getPickerUIAdapter()
+                .setColorTextNoCenter(mColorTextNoCenterListView);
+        }
     }
 
     /**
@@ -256,12 +828,90 @@ public class PickerUI extends LinearLayout {
      * @param which    id of the element has been clicked
      * @param position the position to set in the center of the panel.
      */
-    public void setItems(Context context, List<String> items, int which, int position) {
+    public void setItems(final Context context, final List<String> items, final int which,
+                         final int position) {
         if (items != null) {
             this.items = items;
-            mPickerUIListView.setItems(context, items, which, position, itemsClickables, typeFacePath);
-            setTextColorsListView();
+            ownItems = null;
+            mUpdateQueue.clear();
+            runWhenNotSliding(new Runnable() {
+                @Override
+                public void run() {
+                    mPickerUIListView.setItems(context, items, which, position, itemsClickables,
+                        typeFacePath);
+                    setTextColorsListView();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method to update the items to show in panel. It can be called from any thread: the updates
+     * received until the next frame are merged, and only the last list is shown, with one refresh
+     * of the panel. The list isn't copied, so it mustn't be modified after it's posted.
+     *
+     * @param items the updated elements to show in panel
+     */
+    public void postItems(List<String> items) {
+        if (items != null) {
+            mUpdateQueue.postItems(items);
+        }
+    }
+
+    /**
+     * Method to update the value of an item. It can be called from any thread: the updates
+     * received until the next frame are merged, with one refresh of the panel.
+     *
+     * @param position Position of the item.
+     * @param value    the new value of the item
+     */
+    public void postItem(int position, String value) {
+        mUpdateQueue.postItem(position, value);
+    }
+
+    /**
+     * Applies in the main thread the updates merged in a frame. The values of single items are
+     * set in a copy of the items owned by the panel, so the list given by the app isn't modified.
+     * The copy is made once and changed in place, and it's only copied again while the filter or
+     * the sort are reading it in background.
+     */
+    private void applyUpdates(List<String> newItems, SparseArray<String> changes) {
+        List<String> updatedItems = newItems != null ? newItems : items;
+        if (updatedItems == null) {
+            return;
+        }
+
+        if (changes.size() > 0) {
+            if (updatedItems != ownItems || mPickerUIListView.isReadingItems()) {
+                ownItems = new ArrayList<String>(updatedItems);
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                int key = changes.keyAt(i);
+                if (key >= 0 && key < ownItems.size()) {
+                    ownItems.set(key, changes.valueAt(i));
+                }
+            }
+            updatedItems = ownItems;
+        }
+        else if (updatedItems != ownItems) {
+            ownItems = null;
         }
+
+        final List<String> finalItems = updatedItems;
+        items = finalItems;
+        runWhenNotSliding(new Runnable() {
+            @Override
+            public void run() {
+                if (mPickerUIListView.getPickerUIAdapter() == null) {
+                    mPickerUIListView.setItems(mContext, finalItems, 0, finalItems.size() / 2,
+                        itemsClickables, typeFacePath);
+                    setTextColorsListView();
+                }
+                else {
+                    mPickerUIListView.swapItems(finalItems);
+                }
+            }
+        });
     }
 
     /**
@@ -279,16 +929,10 @@ public class PickerUI extends LinearLayout {
      * @param color the color of the text
      */
     public void setColorTextCenter(int color) {
+        mColorTextCenterListView = getColor(color);
         if (mPickerUIListView != null && mPickerUIListView.getPickerUIAdapter() != null) {
-
-            int newColor;
-            try {
-                newColor = getResources().getColor(color);
-            } catch (Resources.NotFoundException e) {
-                newColor = color;
-            }
-            mColorTextCenterListView = newColor;
-            mPickerUIListView.getPickerUIAdapter().setColorTextCenter(newColor);
+            mPickerUIListView.getPickerUIAdapter().setColorTextCenter(mColorTextCenterListView);
+            mPickerUIListView.refreshVisibleRows();
         }
     }
 
@@ -298,15 +942,38 @@ public class PickerUI extends LinearLayout {
      * @param color the color of the text
      */
     public void setColorTextNoCenter(int color) {
+        mColorTextNoCenterListView = getColor(color);
         if (mPickerUIListView != null && mPickerUIListView.getPickerUIAdapter() != null) {
-            int newColor;
-            try {
-                newColor = getResources().getColor(color);
-            } catch (Resources.NotFoundException e) {
-                newColor = color;
-            }
-            mColorTextNoCenterListView = newColor;
-            mPickerUIListView.getPickerUIAdapter().setColorTextNoCenter(newColor);
+            mPickerUIListView.getPickerUIAdapter().setColorTextNoCenter(mColorTextNoCenterListView);
+            mPickerUIListView.refreshVisibleRows();
+        }
+    }
+
+    /**
+     * Dimensions can be given as resources or as values in pixels.
+     *
+     * @param dimension the resource of the dimension or the dimension
+     * @return the value of the dimension in pixels
+     */
+    private int getDimension(int dimension) {
+        try {
+            return getResources().getDimensionPixelSize(dimension);
+        } catch (Resources.NotFoundException e) {
+            return dimension;
+        }
+    }
+
+    /**
+     * Colors can be given as resources or as values.
+     *
+     * @param color the resource of the color or the color
+     * @return the value of the color
+     */
+    private int getColor(int color) {
+        try {
+            return getResources().getColor(color);
+        } catch (Resources.NotFoundException e) {
+            return color;
         }
     }
 
@@ -320,15 +987,9 @@ public class PickerUI extends LinearLayout {
         setBackgroundLines();
 
         if (mPickerUIListView != null && mPickerUIListView.getPickerUIAdapter() != null) {
-            mPickerUIListView.getPickerUIAdapter().handleSelectEvent(position + 2);
             mPickerUIListView.clearFocus();
-            mPickerUIListView.post(new Runnable() {
-                @Override
-                public void run() {
-                    mPickerUIListView.setSelection(position);
-                    mPickerUIListView.requestFocus();
-                }
-            });
+            mPickerUIListView.centerItem(position);
+            mPickerUIListView.requestFocus();
         }
     }
 
@@ -357,6 +1018,29 @@ public class PickerUI extends LinearLayout {
         mMainLayoutPickerUI.findViewById(R.id.picker_line_bottom).setBackgroundColor(color);
     }
 
+    /**
+     * Sets the provider of the icons shown next to the text of the items. Icons are loaded in
+     * background and cached in memory, shared by all the panels.
+     *
+     * @param iconProvider the provider of the icons, or null to show only the text
+     */
+    public void setIconProvider(PickerUIIconProvider iconProvider) {
+        mPickerUIListView.setIconProvider(iconProvider);
+    }
+
+    /**
+     * Sets the pool of views of the items. Several panels of the same Activity can share a pool,
+     * so the views of a panel which isn't in the window are reused by the others.
+     *
+     * @param rowPool the pool to share
+     */
+    public void setRowPool(PickerUIRowPool rowPool) {
+        if (rowPool == null) {
+            throw new IllegalArgumentException("The pool of rows can't be null");
+        }
+        mPickerUIListView.setRowPool(rowPool);
+    }
+
     /**
      * Set a callback listener for the item click.
      *
@@ -380,6 +1064,126 @@ public class PickerUI extends LinearLayout {
             });
     }
 
+    /**
+     * Sets the provider of a hierarchy of items, and shows its root level. Each level is loaded in
+     * background when it's opened, and the last levels opened are kept in memory with their
+     * scroll, so going back to them is immediate.
+     *
+     * @param levelProvider the provider of the levels, or null to remove the hierarchy
+     * @param rootKey       the key of the root level, given to the provider
+     */
+    public void setLevelProvider(PickerUILevelProvider levelProvider, String rootKey) {
+        if (mLevels == null) {
+            mLevels = new PickerUILevels(new PickerUILevels.LevelListener() {
+                @Override
+                public void onLevelReady(String key, List<String> items, int centerIndex,
+                                         int centerOffset) {
+                    showLevel(key, items, centerIndex, centerOffset);
+                }
+            });
+        }
+        mLevels.setProvider(levelProvider, rootKey);
+    }
+
+    /**
+     * Opens the child level of an item of the level shown, if the item has children.
+     *
+     * @param position Position of the item.
+     * @return false if the item hasn't children or there isn't a provider of levels
+     */
+    public boolean openChildLevel(int position) {
+        if (mLevels == null || mLevels.getProvider() == null || items == null || position < 0
+            || position >= items.size()) {
+            return false;
+        }
+        String childKey = mLevels.getProvider()
+            .getChildKey(mLevels.getCurrentKey(), position, items.get(position));
+        if (childKey == null) {
+            return false;
+        }
+        saveLevelCenter();
+        mLevels.openChild(childKey);
+        return true;
+    }
+
+    /**
+     * Goes back to the parent level, with the same item in the center as when it was left.
+     *
+     * @return false if the level shown is the root level
+     */
+    public boolean closeLevel() {
+        if (mLevels == null || mLevels.getDepth() <= 1) {
+            return false;
+        }
+        saveLevelCenter();
+        return mLevels.openParent();
+    }
+
+    /**
+     * @return the key of the level shown, or null if there isn't a provider of levels
+     */
+    public String getLevelKey() {
+        return mLevels != null ? mLevels.getCurrentKey() : null;
+    }
+
+    /**
+     * @return the number of levels opened, 1 in the root level, or 0 if there isn't a provider of
+     * levels
+     */
+    public int getLevelDepth() {
+        return mLevels != null ? mLevels.getDepth() : 0;
+    }
+
+    private void saveLevelCenter() {
+        mLevels.saveCenter(mPickerUIListView.getItemInListCenter(),
+            mPickerUIListView.getCenterOffset());
+    }
+
+    private void showLevel(final String key, List<String> levelItems, final int centerIndex,
+                           final int centerOffset) {
+        setItems(mContext, levelItems);
+        runWhenNotSliding(new Runnable() {
+            @Override
+            public void run() {
+                if (centerIndex != -1) {
+                    position = centerIndex;
+                    mPickerUIListView.restoreCenter(centerIndex, centerOffset);
+                }
+                if (mPickerUILevelListener != null) {
+                    mPickerUILevelListener.onLevelChanged(key, mLevels.getDepth());
+                }
+            }
+        });
+    }
+
+    /**
+     * Set a callback listener for the changes of level. See {@link
+     * PickerUI#setLevelProvider(PickerUILevelProvider, String)}
+     *
+     * @param listener Callback instance.
+     */
+    public void setOnLevelChangedListener(PickerUILevelListener listener) {
+        mPickerUILevelListener = listener;
+    }
+
+    /**
+     * Set a callback listener for the end of the slide of the panel.
+     *
+     * @param listener Callback instance.
+     */
+    public void setOnSlideListener(PickerUISlideListener listener) {
+        mPickerUISlideListener = listener;
+    }
+
+    /**
+     * Set a callback listener for the changes of the selection in multi-select mode.
+     *
+     * @param listener Callback instance.
+     */
+    public void setOnSelectionChangedListener(PickerUISelectionListener listener) {
+        mPickerUIListView.setOnSelectionChangedListener(listener);
+    }
+
     /**
      * This method sets the desired functionalities of panel to make easy.
      *
@@ -387,12 +1191,114 @@ public class PickerUI extends LinearLayout {
      */
     public void setSettings(PickerUISettings pickerUISettings) {
         mPickerUISettings = pickerUISettings;
-        setColorTextCenter(pickerUISettings.getColorTextCenter());
-        setColorTextNoCenter(pickerUISettings.getColorTextNoCenter());
-        setItems(mContext, pickerUISettings.getItems());
-        setBackgroundColorPanel(pickerUISettings.getBackgroundColor());
-        setLinesColor(pickerUISettings.getLinesColor());
-        setItemsClickables(pickerUISettings.areItemsClickables());
+
+        //Only the settings which are different from the current state of the panel are applied,
+        //so the items and colors set after the previous settings are compared too
+        if (pickerUISettings.getItems() != items) {
+            setItems(mContext, pickerUISettings.getItems());
+        }
+        if (getColor(pickerUISettings.getColorTextCenter()) != mColorTextCenterListView) {
+            setColorTextCenter(pickerUISettings.getColorTextCenter());
+        }
+        if (getColor(pickerUISettings.getColorTextNoCenter()) != mColorTextNoCenterListView) {
+            setColorTextNoCenter(pickerUISettings.getColorTextNoCenter());
+        }
+        if (pickerUISettings.getBackgroundColor() != backgroundColorPanel) {
+            setBackgroundColorPanel(pickerUISettings.getBackgroundColor());
+        }
+        if (pickerUISettings.getLinesColor() != colorLines) {
+            setLinesColor(pickerUISettings.getLinesColor());
+        }
+        if (pickerUISettings.areItemsClickables() != itemsClickables) {
+            setItemsClickables(pickerUISettings.areItemsClickables());
+        }
+        if (pickerUISettings.isWheelMode() != wheelMode) {
+            setWheelMode(pickerUISettings.isWheelMode());
+        }
+        if (pickerUISettings.isCyclic() != cyclic) {
+            setCyclic(pickerUISettings.isCyclic());
+        }
+        if (pickerUISettings.isMultiSelect() != multiSelect) {
+            setMultiSelect(pickerUISettings.isMultiSelect());
+        }
+        if (getDimension(pickerUISettings.getRowHeight()) != rowHeight) {
+            setRowHeight(pickerUISettings.getRowHeight());
+        }
+        if (pickerUISettings.getVisibleRows() != 0
+            && getOddVisibleRows(pickerUISettings.getVisibleRows()) != visibleRows) {
+            setVisibleRows(pickerUISettings.getVisibleRows());
+        }
+        if (pickerUISettings.isMultiLine() != multiLine) {
+            setMultiLine(pickerUISettings.isMultiLine());
+        }
+        if (pickerUISettings.isAutoFitText() != autoFitText) {
+            setAutoFitText(pickerUISettings.isAutoFitText());
+        }
+        if (pickerUISettings.isSortedByLocale() != sortedByLocale) {
+            setSortedByLocale(pickerUISettings.isSortedByLocale());
+        }
+        if (clamp(pickerUISettings.getBlurRadius(), R.integer.blur_radius_min,
+            R.integer.blur_radius_max) != mPickerUIBlur.getRadius()) {
+            setBlurRadius(pickerUISettings.getBlurRadius());
+        }
+        if (clamp(pickerUISettings.getBlurDownScaleFactor(), R.integer.blur_downscale_min,
+            R.integer.blur_downscale_max) != mPickerUIBlur.getDownScaleFactor()) {
+            setBlurDownScaleFactor(pickerUISettings.getBlurDownScaleFactor());
+        }
+        int blurFilterColor = pickerUISettings.getBlurFilterColor();
+        if ((blurFilterColor != 0 ? getColor(blurFilterColor) : 0)
+            != mPickerUIBlur.getFilterColor()) {
+            setBlurFilterColor(blurFilterColor);
+        }
+        if (pickerUISettings.isUseBlur() != useBlur) {
+            setUseBlur(pickerUISettings.isUseBlur());
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mContext.getApplicationContext().registerComponentCallbacks(mTrimMemoryCallbacks);
+        if (mPickerUIBlur != null) {
+            mPickerUIBlur.onAttachedToWindow();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mContext.getApplicationContext().unregisterComponentCallbacks(mTrimMemoryCallbacks);
+        if (mPickerUIBlur != null) {
+            mPickerUIBlur.onDetachedFromWindow();
+        }
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Releases the memory of the caches of the panel: the blurred background, the keys of the sort
+     * and the levels which aren't shown. They are filled again when needed. The pools of views,
+     * which can be shared by several panels, are trimmed once by the library.
+     *
+     * @param level the level given to {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public void trimMemory(int level) {
+        if (mPickerUIListView == null) {
+            return;
+        }
+        mPickerUIListView.trimMemory(level);
+        mPickerUIBlur.trimMemory(level);
+        if (mLevels != null) {
+            mLevels.trimMemory(level);
+        }
+    }
+
+    /**
+     * The panel isn't drawn while the content under it is captured for the blur effect.
+     */
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (mPickerUIBlur == null || !mPickerUIBlur.isCapturing()) {
+            super.dispatchDraw(canvas);
+        }
     }
 
     /**
@@ -403,9 +1309,17 @@ public class PickerUI extends LinearLayout {
 
         Bundle bundle = new Bundle();
         bundle.putParcelable("instanceState", super.onSaveInstanceState());
-        bundle.putParcelable("stateSettings", mPickerUISettings);
+        //The items updated after the settings aren't written into the settings of the app
+        PickerUISettings stateSettings = mPickerUISettings;
+        if (stateSettings != null && stateSettings.getItems() != items) {
+            stateSettings = stateSettings.copyWithItems(items);
+        }
+        bundle.putParcelable("stateSettings", stateSettings);
         //save everything
         bundle.putInt("statePosition", mPickerUIListView.getItemInListCenter());
+        bundle.putInt("stateOffset", mPickerUIListView.getCenterOffset());
+        bundle.putSerializable("stateSelection", mPickerUIListView.getSelectedItems());
+        bundle.putBoolean("statePanelShown", panelShown);
         return bundle;
     }
 
@@ -418,31 +1332,28 @@ public class PickerUI extends LinearLayout {
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
             //load everything
+            //If the settings have been set again while creating the view, they aren't replaced
             PickerUISettings pickerUISettings = bundle.getParcelable("stateSettings");
-            if (pickerUISettings != null) {
+            if (pickerUISettings != null && mPickerUISettings == null) {
                 setSettings(pickerUISettings);
             }
 
-            final int statePosition = bundle.getInt("statePosition");
-
-            ViewTreeObserver observer = getViewTreeObserver();
-            observer.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-                @Override
-                public void onGlobalLayout() {
-
-                    slideUp(statePosition);
-
-                    if (android.os.Build.VERSION.SDK_INT
-                        >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
-                        getViewTreeObserver().removeOnGlobalLayoutListener(this);
-                    }
-                    else {
-                        //noinspection deprecation
-                        getViewTreeObserver().removeGlobalOnLayoutListener(this);
-                    }
+            BitSet stateSelection = (BitSet) bundle.getSerializable("stateSelection");
+            if (stateSelection != null) {
+                mPickerUIListView.getSelectedItems().or(stateSelection);
+            }
 
-                }
-            });
+            //The exact scroll is applied in the first layout pass, without waiting for it
+            int statePosition = bundle.getInt("statePosition", -1);
+            if (statePosition != -1) {
+                position = statePosition;
+                mPickerUIListView.restoreCenter(statePosition, bundle.getInt("stateOffset"));
+            }
+            if (bundle.getBoolean("statePanelShown")) {
+                setBackgroundPanel();
+                setBackgroundLines();
+                showPanel(false);
+            }
 
             state = bundle.getParcelable("instanceState");
         }
@@ -469,4 +1380,95 @@ public class PickerUI extends LinearLayout {
         public void onItemClickPickerUI(int which, int position, String valueResult);
     }
 
+    /**
+     * Interface for a callback when the panel has slid.
+     */
+    public interface PickerUISlideListener {
+
+        /**
+         * Callback when the panel has finished to slide up or down.
+         *
+         * @param panelShown Whether the panel is shown.
+         */
+        public void onSlideFinishedPickerUI(boolean panelShown);
+    }
+
+    /**
+     * Interface for a callback when the selection changes in multi-select mode.
+     */
+    public interface PickerUISelectionListener {
+
+        /**
+         * Callback when some items have been selected or deselected. Only the changed range is
+         * given, see {@link PickerUI#getSelectedItems()} to get the whole selection.
+         *
+         * @param fromIndex Position of the first item changed.
+         * @param toIndex   Position after the last item changed.
+         * @param selected  Whether the items have been selected or deselected.
+         */
+        public void onSelectionChanged(int fromIndex, int toIndex, boolean selected);
+    }
+
+    /**
+     * Interface to provide the levels of a hierarchy of items.
+     */
+    public interface PickerUILevelProvider {
+
+        /**
+         * Called in a background thread to load the items of a level which isn't in memory.
+         *
+         * @param levelKey the key of the level
+         * @return the items of the level, or null if it can't be loaded.
+         */
+        public List<String> loadLevel(String levelKey);
+
+        /**
+         * Called in the main thread to know the level opened by an item. It must be fast.
+         *
+         * @param levelKey  the key of the level of the item
+         * @param position  Position of the item.
+         * @param valueItem Value of text of the item.
+         * @return the key of the child level, or null if the item hasn't children.
+         */
+        public String getChildKey(String levelKey, int position, String valueItem);
+    }
+
+    /**
+     * Interface for a callback when the level shown has changed.
+     */
+    public interface PickerUILevelListener {
+
+        /**
+         * Callback when a level has been shown.
+         *
+         * @param levelKey the key of the level
+         * @param depth    the number of levels opened, 1 in the root level
+         */
+        public void onLevelChanged(String levelKey, int depth);
+    }
+
+    /**
+     * Interface to provide the icons of the items.
+     */
+    public interface PickerUIIconProvider {
+
+        /**
+         * Called in the main thread when the item is going to be shown. It must be fast.
+         *
+         * @param position  Position of the item.
+         * @param valueItem Value of text of the item.
+         * @return the key which identifies the icon in the cache, or null if the item hasn't icon.
+         */
+        public String getIconKey(int position, String valueItem);
+
+        /**
+         * Called in a background thread to load the icon which isn't in the cache.
+         *
+         * @param key  the key returned by {@link #getIconKey(int, String)}
+         * @param size the size in pixels of the icon, to decode the bitmap with this size.
+         * @return the icon, or null if it can't be loaded.
+         */
+        public Bitmap loadIcon(String key, int size);
+    }
+
 }
@@ -1,19 +1,22 @@
 package com.dpizarro.uipicker.library.picker;
 
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
 import android.util.SparseArray;
-import android.util.SparseIntArray;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.dpizarro.uipicker.library.R;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /*
@@ -35,23 +38,53 @@ class PickerUIAdapter extends ArrayAdapter<String> {
 
     private static final String EMPTY_STRING = "";
 
-    private static final int ROTATION_CENTER      = 0;
-    private static final int ROTATION_TWICE_ABOVE = -25;
-    private static final int ROTATION_FIRST       = -50;
-    private static final int ROTATION_BELOW       = 25;
-    private static final int ROTATION_TWICE_BELOW = 50;
-    private static final int ROTATION_ABOVE_FAR   = -55;
-    private static final int ROTATION_BELOW_FAR   = 55;
+    /**
+     * Default number of empty rows at the beginning and at the end of the list, to be able to set
+     * the first and the last items in the center. It's the half of the visible rows.
+     */
+    static final int DEFAULT_EMPTY_ROWS = 2;
+
+    /**
+     * Maximum number of rows of the list in cyclic mode. The items are repeated virtually, mapping
+     * each row to the index of its item.
+     */
+    private static final int MAX_CYCLIC_COUNT = Integer.MAX_VALUE / 2;
+
+    /**
+     * Maximum number of lines of the rows with several lines. Longer texts are ellipsized.
+     */
+    private static final int MULTI_LINE_MAX_LINES = 3;
 
     private Context      mContext;
     private List<String> items;
+    private int[]        filteredRows;
+    private int          filteredRowCount;
+    private int[]        sortedRows;
+    private int[]        sortedRanks;
     private int          centerPosition;
     private boolean itemsClickables = true;
-    private SparseIntArray positionsNoClickables;
     private int     mColorTextCenter   = -1;
     private int     mColorTextNoCenter = -1;
     private boolean isInEditMode       = false;
+    private boolean wheelMode          = false;
+    private boolean cyclic             = false;
+    private boolean multiSelect        = false;
+    private int     emptyRows          = DEFAULT_EMPTY_ROWS;
+    private int     rowHeight;
+    private int     defaultRowHeight;
+    private RowHeights rowHeights;
+    private TextPaint  measurePaint;
+    private TextFitCache textFitCache;
+    private int          fitWidth;
+    private BitSet  selectedItems;
+    private BitSet  disabledItems;
+    private ColorStateList mTextColorsCenter;
+    private ColorStateList mTextColorsNoCenter;
+    private ColorStateList mTextColorsDisabled;
     private Typeface mTypeFace;
+    private PickerUI.PickerUIIconProvider mIconProvider;
+    private int                           mIconSize;
+    private PickerUIRowPool mRowPool;
 
     /**
      * Constructor to use the adapter.
@@ -63,47 +96,133 @@ class PickerUIAdapter extends ArrayAdapter<String> {
      * @param position        position to set in the center of the list. By default, is the half of
      *                        items.
      * @param itemsClickables to set if items can be clicked.
+     * @param cyclic          to set if the list is cyclic.
+     * @param typeFace        the font of the items, or null to use the default font.
+     * @param rowPool         the pool of views and styles of the items.
      * @param isInEditMode    to avoid to set styles.
      */
     public PickerUIAdapter(Context context, int resource, List<String> items, int position,
                            boolean itemsClickables,
+                           boolean cyclic,
                            Typeface typeFace,
+                           PickerUIRowPool rowPool,
                            boolean isInEditMode) {
         super(context, resource, items);
         this.mContext = context;
+        this.mRowPool = rowPool;
         this.itemsClickables = itemsClickables;
+        this.cyclic = cyclic;
         this.isInEditMode = isInEditMode;
         this.mTypeFace = typeFace;
-        positionsNoClickables = new SparseIntArray(items.size());
+        this.mIconSize = context.getResources()
+            .getDimensionPixelSize(R.dimen.size_icon_item_pickerui);
+        this.defaultRowHeight = context.getResources()
+            .getDimensionPixelSize(R.dimen.height_normal_item_pickerui);
+        this.mTextColorsDisabled = ColorStateList
+            .valueOf(context.getResources().getColor(R.color.text_disabled_pickerui));
         setItems(items, position);
-        setPositonsNoClickables();
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
 
         if (convertView == null) {
-            LayoutInflater vi = (LayoutInflater) mContext.getSystemService(
-                Context.LAYOUT_INFLATER_SERVICE);
-            convertView = vi.inflate(R.layout.pickerui_item, parent, false);
+            convertView = mRowPool.acquireRow(mContext, parent);
         }
 
         TextView textItem = ViewHolder.get(convertView, R.id.tv_item);
-        String option = items.get(position);
+        String option = getItem(position);
         textItem.setText(option);
 
+        ImageView iconItem = ViewHolder.get(convertView, R.id.iv_item);
+        setIconItem(iconItem, position, option);
+
+        if (rowHeights != null) {
+            setMultiLineHeight(textItem, iconItem, parent, position, option);
+        }
+        else {
+            setRowHeight(textItem);
+        }
+
+        setFitWidth(parent);
+
+        setItemStyle(convertView, textItem, position);
+
+        return convertView;
+    }
+
+    /**
+     * This method sets the style of the visible items without binding them again. It's used when
+     * the item of the center changes, instead of notifying the adapter.
+     *
+     * @param listView the list which shows the items
+     */
+    void refreshVisibleRows(AbsListView listView) {
+        setFitWidth(listView);
+        int firstPosition = listView.getFirstVisiblePosition();
+        for (int i = 0; i < listView.getChildCount(); i++) {
+            View row = listView.getChildAt(i);
+            setItemStyle(row, (TextView) ViewHolder.get(row, R.id.tv_item), firstPosition + i);
+        }
+    }
+
+    /**
+     * This method sets the style of the item depending on the mode, its position and its state.
+     *
+     * @param row      the view of the current position of the actual item
+     * @param textItem the TextView of the current position of the actual item
+     * @param position the current position of the actual item
+     */
+    private void setItemStyle(View row, TextView textItem, int position) {
+
         /**
          * If isInEditMode active, don't set styles
          */
         if (!isInEditMode) {
-            setTextItemStyle(textItem, position);
+            if (wheelMode) {
+                setTextItemWheelStyle(textItem, position);
+            }
+            else {
+                PickerUIListView.resetWheelTransform(row);
+                setTextItemStyle(textItem, position);
+            }
         }
 
-        if (mTypeFace != null) {
-            textItem.setTypeface(mTypeFace);
+        row.setActivated(isItemSelected(position));
+
+        int index = getItemIndex(position);
+        boolean enabled = index == -1 || !isItemDisabled(index);
+        textItem.setEnabled(enabled);
+        if (!enabled && !isInEditMode) {
+            setTextColor(textItem, mTextColorsDisabled);
         }
+    }
 
-        return convertView;
+    /**
+     * This method sets the icon of the row, if there is an {@link PickerUI.PickerUIIconProvider}.
+     * The icon is never decoded here: it comes from {@link IconCache} or it's loaded in
+     * background.
+     *
+     * @param iconItem the ImageView of the current position of the actual item
+     * @param position the current position of the actual item
+     * @param option   the text of the actual item
+     */
+    private void setIconItem(ImageView iconItem, int position, String option) {
+        String key = null;
+        int index = getItemIndex(position);
+        if (mIconProvider != null && index != -1) {
+            key = mIconProvider.getIconKey(index, option);
+        }
+
+        if (key == null) {
+            IconCache.cancel(iconItem);
+            iconItem.setImageDrawable(null);
+            iconItem.setVisibility(View.GONE);
+        }
+        else {
+            iconItem.setVisibility(View.VISIBLE);
+            IconCache.load(iconItem, key, mIconProvider, mIconSize);
+        }
     }
 
     /**
@@ -115,56 +234,121 @@ class PickerUIAdapter extends ArrayAdapter<String> {
     private void setTextItemStyle(TextView textItem, int position) {
 
         if (position == centerPosition) {
-            textItem.setTextAppearance(mContext, R.style.PickerUI_Center_Item);
+            setTextAppearance(textItem, position, R.style.PickerUI_Center_Item);
             setTextCenterColor(textItem);
-//            textItem.setRotationX(ROTATION_CENTER);
             textItem.setAlpha((float) 1.0);
         }
         else if (position - 1 == centerPosition) {
-            textItem.setTextAppearance(mContext, R.style.PickerUI_Near_Center_Item);
+            setTextAppearance(textItem, position, R.style.PickerUI_Near_Center_Item);
             setTextNoCenterColor(textItem);
-//            textItem.setRotationX(ROTATION_TWICE_ABOVE);
             textItem.setAlpha((float) 1.0);
         }
         else if (position - 2 == centerPosition) {
-            textItem.setTextAppearance(mContext, R.style.PickerUI_Far_Center_Item);
+            setTextAppearance(textItem, position, R.style.PickerUI_Far_Center_Item);
             setTextNoCenterColor(textItem);
-//            textItem.setRotationX(ROTATION_FIRST);
             textItem.setAlpha((float) 0.7);
         }
         else if (position + 1 == centerPosition) {
-            textItem.setTextAppearance(mContext, R.style.PickerUI_Near_Center_Item);
+            setTextAppearance(textItem, position, R.style.PickerUI_Near_Center_Item);
             setTextNoCenterColor(textItem);
-//            textItem.setRotationX(ROTATION_BELOW);
             textItem.setAlpha((float) 1.0);
         }
         else if (position + 2 == centerPosition) {
-            textItem.setTextAppearance(mContext, R.style.PickerUI_Far_Center_Item);
+            setTextAppearance(textItem, position, R.style.PickerUI_Far_Center_Item);
             setTextNoCenterColor(textItem);
-//            textItem.setRotationX(ROTATION_TWICE_BELOW);
             textItem.setAlpha((float) 0.7);
         }
         else {
+            setTextAppearance(textItem, position, R.style.PickerUI_Small_Item);
+        }
+    }
+
+    /**
+     * In wheel mode all the items have the same style. The effect depends on the distance to the
+     * center and it's applied by {@link PickerUIListView} while scrolling.
+     *
+     * @param textItem the TextView of the current position of the actual item
+     * @param position the current position of the actual item
+     */
+    private void setTextItemWheelStyle(TextView textItem, int position) {
+        setTextAppearance(textItem, position, R.style.PickerUI_Wheel_Item);
+        setTextCenterColor(textItem);
+        textItem.setAlpha((float) 1.0);
+    }
 
-//            if (position < centerPosition) {
-//                textItem.setRotationX(ROTATION_BELOW_FAR);
-//            } else {
-//                textItem.setRotationX(ROTATION_ABOVE_FAR);
-//            }
+    /**
+     * Sets the style of the item with the font of the panel. Styles are resolved only once, by
+     * {@link PickerUIRowPool}. In auto-fit mode, the text size is reduced if the text doesn't fit
+     * the width of the row.
+     *
+     * @param textItem the TextView of the current position of the actual item
+     * @param position the current position of the actual item
+     * @param styleRes the style to apply
+     */
+    private void setTextAppearance(TextView textItem, int position, int styleRes) {
+        ItemTextStyle style = mRowPool.getStyle(mContext, styleRes);
+        int index = getItemIndex(position);
+        if (textFitCache == null || rowHeights != null || index == -1 || fitWidth <= 0) {
+            style.apply(textItem, mTypeFace);
+            return;
+        }
 
-            textItem.setTextAppearance(mContext, R.style.PickerUI_Small_Item);
+        int textWidth = fitWidth - textItem.getCompoundPaddingLeft()
+            - textItem.getCompoundPaddingRight();
+        View iconItem = ViewHolder.get((View) textItem.getParent(), R.id.iv_item);
+        if (iconItem.getVisibility() == View.VISIBLE) {
+            textWidth -= mIconSize + ((ViewGroup.MarginLayoutParams) iconItem.getLayoutParams())
+                .rightMargin;
+        }
+        style.apply(textItem, mTypeFace, textFitCache
+            .getTextSize(index, styleRes, style, mTypeFace, textItem.getText(), textWidth));
+    }
+
+    /**
+     * This method enables the auto-fit mode, where the text size of the items which don't fit the
+     * width of the row is reduced, instead of ellipsizing them. It doesn't apply to the rows with
+     * several lines.
+     *
+     * @param autoFitText indicates whether the auto-fit mode is enabled or not.
+     */
+    void setAutoFitText(boolean autoFitText) {
+        if (!autoFitText) {
+            textFitCache = null;
+        }
+        else if (textFitCache == null) {
+            textFitCache = new TextFitCache(mContext.getResources()
+                .getDimension(R.dimen.textsize_min_pickerui_item));
+        }
+    }
+
+    /**
+     * The sizes of the auto-fit mode depend on the width of the list.
+     */
+    private void setFitWidth(ViewGroup listView) {
+        fitWidth = listView.getWidth() - listView.getPaddingLeft() - listView.getPaddingRight();
+        if (textFitCache != null) {
+            textFitCache.setWidth(fitWidth);
         }
     }
 
     private void setTextCenterColor(TextView textItem) {
         if (mColorTextCenter != -1) {
-            textItem.setTextColor(mColorTextCenter);
+            setTextColor(textItem, mTextColorsCenter);
         }
     }
 
     private void setTextNoCenterColor(TextView textItem) {
         if (mColorTextNoCenter != -1) {
-            textItem.setTextColor(mColorTextNoCenter);
+            setTextColor(textItem, mTextColorsNoCenter);
+        }
+    }
+
+    /**
+     * Colors are kept as {@link ColorStateList} to avoid to create one each time the style is set.
+     */
+    private void setTextColor(TextView textItem, ColorStateList colors) {
+        if (textItem.getTextColors() != colors) {
+            textItem.setTextColor(colors);
         }
     }
 
@@ -175,6 +359,7 @@ class PickerUIAdapter extends ArrayAdapter<String> {
      */
     public void setColorTextCenter(int color) {
         mColorTextCenter = color;
+        mTextColorsCenter = ColorStateList.valueOf(color);
     }
 
     /**
@@ -184,82 +369,587 @@ class PickerUIAdapter extends ArrayAdapter<String> {
      */
     public void setColorTextNoCenter(int color) {
         mColorTextNoCenter = color;
+        mTextColorsNoCenter = ColorStateList.valueOf(color);
     }
 
     /**
-     * This method is used to set the items to display in the panel and the empty rows int the
-     * beginning and in the
-     * end.
+     * This method is used to set the items to display in the panel. The items aren't copied: the
+     * empty rows in the beginning and in the end, and the repetitions of the cyclic mode, are
+     * mapped by {@link PickerUIAdapter#getItemIndex(int)}.
      *
      * @param rawItems elements to show in panel
      * @param position position to set in the center of the list. By default, is the half of items.
      */
     void setItems(List<String> rawItems, int position) {
+        this.items = rawItems;
+        updateRowHeights(false);
+        if (textFitCache != null) {
+            textFitCache.clear();
+        }
 
-        addEmptyRows(rawItems);
+        //The row of the item is searched around the initial center
+        centerPosition = getInitialCenterPosition();
+        centerPosition = getListPosition(position == -1 ? 0 : position);
+    }
 
-        if (position == -1) {
-            centerPosition = 2;
+    /**
+     * This method replaces the items without creating a new adapter, when they are updated. If the
+     * number of items is the same, the rows don't move. If not, the index of the item in the
+     * center is kept, and the filtered rows are removed until the filter runs again.
+     *
+     * @param newItems the updated items
+     */
+    void swapItems(List<String> newItems) {
+        if (newItems.size() != items.size()) {
+            int index = getItemIndex(centerPosition);
+            filteredRows = null;
+            filteredRowCount = 0;
+            if (newItems.size() < items.size()) {
+                //The order may have indexes which don't exist anymore
+                sortedRows = null;
+                sortedRanks = null;
+            }
+            this.items = newItems;
+            updateRowHeights(false);
+
+            index = Math.max(0, Math.min(newItems.size() - 1, index));
+            centerPosition = getInitialCenterPosition();
+            centerPosition = getListPosition(index);
         }
         else {
-            centerPosition = position + 2;
+            this.items = newItems;
+            updateRowHeights(false);
+        }
+        if (textFitCache != null) {
+            textFitCache.clear();
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * This method sets the cyclic mode, where the first item follows the last one. The item in the
+     * center is kept.
+     *
+     * @param cyclic indicates whether the list is cyclic or not.
+     */
+    void setCyclic(boolean cyclic) {
+        if (this.cyclic == cyclic) {
+            return;
+        }
+        int index = getItemIndex(centerPosition);
+        this.cyclic = cyclic;
+
+        centerPosition = getInitialCenterPosition();
+        centerPosition = getListPosition(index == -1 ? 0 : index);
+        notifyDataSetChanged();
+    }
+
+    boolean isCyclic() {
+        return cyclic;
+    }
+
+    /**
+     * This method sets the number of empty rows at the beginning and at the end of the list. The
+     * item in the center is kept.
+     *
+     * @param emptyRows the number of empty rows at each end
+     */
+    void setEmptyRows(int emptyRows) {
+        if (this.emptyRows == emptyRows) {
+            return;
+        }
+        int index = getItemIndex(centerPosition);
+        this.emptyRows = emptyRows;
+
+        centerPosition = getInitialCenterPosition();
+        centerPosition = getListPosition(index == -1 ? 0 : index);
+        notifyDataSetChanged();
+    }
+
+    int getEmptyRows() {
+        return emptyRows;
+    }
+
+    /**
+     * This method sets the height of the rows.
+     *
+     * @param rowHeight the height in pixels, or 0 to use the height of the layout
+     */
+    void setRowHeight(int rowHeight) {
+        this.rowHeight = rowHeight;
+        if (rowHeights != null) {
+            rowHeights.setDefaultHeight(getDefaultRowHeight());
+        }
+    }
+
+    private int getDefaultRowHeight() {
+        return rowHeight > 0 ? rowHeight : defaultRowHeight;
+    }
+
+    /**
+     * The views of the rows can come from a pool shared with panels with other heights, so the
+     * height is checked each time they are bound.
+     */
+    private void setRowHeight(TextView textItem) {
+        if (textItem.getMaxLines() != 1) {
+            textItem.setMaxLines(1);
+        }
+        setTextItemHeight(textItem, rowHeight);
+    }
+
+    private static void setTextItemHeight(TextView textItem, int height) {
+        ViewGroup.LayoutParams params = textItem.getLayoutParams();
+        if (height > 0 && params.height != height) {
+            params.height = height;
+            textItem.setLayoutParams(params);
+        }
+    }
+
+    /**
+     * This method enables the rows with several lines of text, where each row is as high as its
+     * text needs, with the row height as minimum.
+     *
+     * @param multiLine indicates whether the rows can have several lines or not.
+     * @param divider   the height of the divider between rows
+     */
+    void setMultiLine(boolean multiLine, int divider) {
+        if (!multiLine) {
+            rowHeights = null;
+        }
+        else if (rowHeights == null) {
+            rowHeights = new RowHeights(getDefaultRowHeight(), divider);
+            measurePaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+            updateRowHeights(false);
+        }
+    }
+
+    /**
+     * @return if the rows can have different heights
+     */
+    boolean hasVariableHeights() {
+        return rowHeights != null;
+    }
+
+    /**
+     * The rows with several lines are measured once for each item with the style of the center,
+     * so their height doesn't change while they move between tiers. The height is kept in {@link
+     * RowHeights} until the items or the width change.
+     */
+    private void setMultiLineHeight(TextView textItem, ImageView iconItem, ViewGroup parent,
+                                    int position, String option) {
+        if (textItem.getMaxLines() != MULTI_LINE_MAX_LINES) {
+            textItem.setMaxLines(MULTI_LINE_MAX_LINES);
+        }
+
+        int height = getDefaultRowHeight();
+        int row = getRowOfPosition(position);
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        if (row != -1 && width > 0) {
+            rowHeights.setWidth(width);
+            int index = getItemIndex(position);
+            int measuredHeight = rowHeights.getItemHeight(index);
+            //An empty text may be a row which isn't loaded yet, like in PickerUICursorItems: it
+            //isn't measured, so the height is measured when the text arrives
+            if (measuredHeight == 0 && option != null && option.length() > 0) {
+                if (iconItem.getVisibility() == View.VISIBLE) {
+                    width -= mIconSize + ((ViewGroup.MarginLayoutParams) iconItem
+                        .getLayoutParams()).rightMargin;
+                }
+                measuredHeight = Math.max(height, measureTextHeight(textItem, option, width));
+                rowHeights.setRowHeight(row, measuredHeight);
+            }
+            if (measuredHeight > 0) {
+                height = measuredHeight;
+            }
+        }
+        setTextItemHeight(textItem, height);
+    }
+
+    private int measureTextHeight(TextView textItem, String option, int width) {
+        int textWidth = width - textItem.getCompoundPaddingLeft()
+            - textItem.getCompoundPaddingRight();
+        if (textWidth <= 0) {
+            return 0;
+        }
+        mRowPool.getStyle(mContext,
+            wheelMode ? R.style.PickerUI_Wheel_Item : R.style.PickerUI_Center_Item)
+            .apply(measurePaint, mTypeFace);
+        StaticLayout layout = new StaticLayout(option, measurePaint, textWidth,
+            Layout.Alignment.ALIGN_CENTER, 1, 0, textItem.getIncludeFontPadding());
+        int lines = Math.min(layout.getLineCount(), MULTI_LINE_MAX_LINES);
+        return layout.getLineTop(lines) + textItem.getCompoundPaddingTop()
+            + textItem.getCompoundPaddingBottom();
+    }
+
+    /**
+     * Sets the rows in {@link RowHeights} after a change of the items or the filter.
+     *
+     * @param sameItems if the items are the same, so their heights are kept
+     */
+    private void updateRowHeights(boolean sameItems) {
+        if (rowHeights != null && items != null) {
+            rowHeights.setRows(items.size(), filteredRows != null ? filteredRows : sortedRows,
+                getRowCount(), sameItems);
         }
+    }
 
+    /**
+     * Gets the distance between the top of the list and the top of a row, with the heights of
+     * {@link RowHeights}. It's calculated in O(log n).
+     *
+     * @param position the position of the row in the list
+     * @return the distance in pixels
+     */
+    long getPositionTop(int position) {
+        int rowCount = getRowCount();
+        if (cyclic) {
+            return rowCount == 0 ? 0 : (long) (position / rowCount) * rowHeights.getTotal()
+                + rowHeights.getTop(position % rowCount);
+        }
+        int pitch = rowHeights.getDefaultPitch();
+        int row = position - emptyRows;
+        if (row < 0) {
+            return (long) position * pitch;
+        }
+        if (row >= rowCount) {
+            return (long) (emptyRows + row - rowCount) * pitch + rowHeights.getTotal();
+        }
+        return (long) emptyRows * pitch + rowHeights.getTop(row);
     }
 
     /**
-     * It saves in {@link PickerUIAdapter#centerPosition} and notify adapter. Then, the adapter in
-     * {@link
+     * @param position the position of the row in the list
+     * @return the distance between the top of the row and the top of the next one
+     */
+    int getPositionPitch(int position) {
+        int row = getRowOfPosition(position);
+        return row == -1 ? rowHeights.getDefaultPitch() : rowHeights.getPitch(row);
+    }
+
+    /**
+     * Gets the row at a distance from the top of the list, with the heights of {@link
+     * RowHeights}. It's searched in O(log n).
+     *
+     * @param y the distance in pixels
+     * @return the position of the row in the list, without checking the number of rows
+     */
+    int getPositionAt(long y) {
+        y = Math.max(0, y);
+        int rowCount = getRowCount();
+        long total = rowHeights.getTotal();
+        if (cyclic) {
+            if (rowCount == 0 || total == 0) {
+                return 0;
+            }
+            long cycle = y / total;
+            return (int) (cycle * rowCount + rowHeights.findRow(y - cycle * total));
+        }
+
+        int pitch = rowHeights.getDefaultPitch();
+        long emptyHeight = (long) emptyRows * pitch;
+        if (y < emptyHeight) {
+            return (int) (y / pitch);
+        }
+        y -= emptyHeight;
+        if (y < total) {
+            return emptyRows + rowHeights.findRow(y);
+        }
+        return emptyRows + rowCount + (int) ((y - total) / pitch);
+    }
+
+    /**
+     * This method sets the rows to show, when the items are filtered.
+     *
+     * @param rows     the indexes of the items to show, in ascending order, or null to show all
+     *                 the items. The array isn't copied.
+     * @param rowCount the number of valid indexes in rows
+     */
+    void setRows(int[] rows, int rowCount) {
+        this.filteredRows = rows;
+        this.filteredRowCount = rowCount;
+        updateRowHeights(true);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * This method sets the order of the rows, when the items are sorted. The item in the center is
+     * kept, and the filtered rows are removed until the filter runs again with the new order.
+     *
+     * @param rows  the indexes of the items in the order of the rows, or null to show the items
+     *              in their order. Items added after the sort aren't shown until the next one.
+     * @param ranks the row of each item, by index
+     */
+    void setOrder(int[] rows, int[] ranks) {
+        int index = getItemIndex(centerPosition);
+        this.sortedRows = rows;
+        this.sortedRanks = ranks;
+        filteredRows = null;
+        filteredRowCount = 0;
+        updateRowHeights(true);
+
+        centerPosition = getInitialCenterPosition();
+        centerPosition = getListPosition(index == -1 ? 0 : index);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @return the indexes of the items in the order of the rows, or null if they aren't sorted
+     */
+    int[] getOrder() {
+        return sortedRows;
+    }
+
+    /**
+     * @return the number of rows with items, without empty rows and cyclic repetitions
+     */
+    int getRowCount() {
+        if (filteredRows != null) {
+            return filteredRowCount;
+        }
+        return sortedRows != null ? sortedRows.length : items.size();
+    }
+
+    /**
+     * In cyclic mode, the list starts in the middle of the virtual rows to be able to scroll to
+     * both sides.
+     */
+    private int getInitialCenterPosition() {
+        int rowCount = getRowCount();
+        if (cyclic && rowCount > 0) {
+            int count = getCount();
+            return count / 2 - (count / 2) % rowCount;
+        }
+        return 0;
+    }
+
+    /**
+     * @return if the rows show all the items in the order of their indexes, without filter or sort
+     */
+    boolean hasItemOrder() {
+        return filteredRows == null && sortedRows == null;
+    }
+
+    /**
+     * Gets the index of the item shown in a row of the list.
+     *
+     * @param position the position of the row in the list
+     * @return the index of the item, or -1 if the row is empty
+     */
+    int getItemIndex(int position) {
+        int row = getRowOfPosition(position);
+        if (row == -1) {
+            return -1;
+        }
+        if (filteredRows != null) {
+            return filteredRows[row];
+        }
+        return sortedRows != null ? sortedRows[row] : row;
+    }
+
+    /**
+     * @param position the position of the row in the list
+     * @return the row, without empty rows and cyclic repetitions, or -1 if the row is empty
+     */
+    private int getRowOfPosition(int position) {
+        int rowCount = getRowCount();
+        if (rowCount == 0 || position < 0) {
+            return -1;
+        }
+        if (cyclic) {
+            return position % rowCount;
+        }
+        int row = position - emptyRows;
+        return row < 0 || row >= rowCount ? -1 : row;
+    }
+
+    /**
+     * Gets the position of the row of the list which shows an item. In cyclic mode, it's the
+     * closest row to the current center. If the item is filtered, it's the row of the closest
+     * item.
+     *
+     * @param index the index of the item
+     * @return the position of the row in the list
+     */
+    int getListPosition(int index) {
+        int row = getRow(index);
+        int rowCount = getRowCount();
+        if (!cyclic || rowCount == 0) {
+            return row + emptyRows;
+        }
+        int position = centerPosition - centerPosition % rowCount + row;
+        if (position - centerPosition > rowCount / 2) {
+            position -= rowCount;
+        }
+        else if (centerPosition - position > rowCount / 2) {
+            position += rowCount;
+        }
+        return Math.max(0, Math.min(getCount() - 1, position));
+    }
+
+    /**
+     * Gets the row which shows an item. When the items are filtered, the rows are searched with a
+     * binary search of the rank of the item and, if the item isn't shown, the row of the closest
+     * item is returned.
+     *
+     * @param index the index of the item
+     * @return the row of the item, without empty rows
+     */
+    private int getRow(int index) {
+        if (filteredRows == null) {
+            return sortedRanks == null ? index : Math.max(0, Math.min(getRank(index),
+                sortedRows.length - 1));
+        }
+        if (filteredRowCount == 0) {
+            return 0;
+        }
+
+        int rank = getRank(index);
+        int low = 0;
+        int high = filteredRowCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleRank = getRank(filteredRows[middle]);
+            if (middleRank < rank) {
+                low = middle + 1;
+            }
+            else if (middleRank > rank) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+
+        //low is the first row after the item
+        if (low == filteredRowCount) {
+            return filteredRowCount - 1;
+        }
+        if (low > 0
+            && rank - getRank(filteredRows[low - 1]) <= getRank(filteredRows[low]) - rank) {
+            return low - 1;
+        }
+        return low;
+    }
+
+    /**
+     * @param index the index of the item
+     * @return the position of the item in the order of the rows, or the index if the items aren't
+     * sorted. Items added after the sort go after the rest.
+     */
+    private int getRank(int index) {
+        if (sortedRanks == null) {
+            return index;
+        }
+        return index < sortedRanks.length ? sortedRanks[index] : Integer.MAX_VALUE;
+    }
+
+    int getCenterPosition() {
+        return centerPosition;
+    }
+
+    /**
+     * It saves in {@link PickerUIAdapter#centerPosition}. Then, {@link
+     * PickerUIAdapter#refreshVisibleRows(AbsListView)} or the adapter in {@link
      * PickerUIAdapter#setTextItemStyle(TextView, int)} set the appropriate style.
      *
      * @param position this is the position in the center of the list
      */
     public void handleSelectEvent(int position) {
         this.centerPosition = position;
-        this.notifyDataSetChanged();
     }
 
     /**
-     * This method set if the elements can be clicked by the user.
+     * This method sets the wheel mode, where the style of the items doesn't change by tiers.
      *
-     * @param itemsClickables indicates whether the items are clickable or not.
+     * @param wheelMode indicates whether the wheel mode is enabled or not.
      */
-    public void setItemsClickables(boolean itemsClickables) {
-        this.itemsClickables = itemsClickables;
+    public void setWheelMode(boolean wheelMode) {
+        this.wheelMode = wheelMode;
     }
 
     /**
-     * The first two positions must be empty.
-     * The last 2 positions must be empty too.
+     * Sets the pool to get the views and styles of the items.
+     *
+     * @param rowPool the pool of views and styles of the items
      */
-    private void setPositonsNoClickables() {
+    void setRowPool(PickerUIRowPool rowPool) {
+        mRowPool = rowPool;
+    }
 
-        positionsNoClickables.put(0, 0);
-        positionsNoClickables.put(1, 1);
-        positionsNoClickables.put(items.size() - 2, items.size() - 2);
-        positionsNoClickables.put(items.size() - 1, items.size() - 1);
+    /**
+     * Sets the provider of the icons of the rows.
+     *
+     * @param iconProvider the provider of the icons, or null to show only the text
+     */
+    public void setIconProvider(PickerUI.PickerUIIconProvider iconProvider) {
+        mIconProvider = iconProvider;
+    }
+
+    /**
+     * This method sets the multi-select mode, where the user selects several items clicking them.
+     *
+     * @param multiSelect   indicates whether the multi-select mode is enabled or not.
+     * @param selectedItems the indexes of the selected items. It's shared with {@link
+     *                      PickerUIListView}, not copied.
+     */
+    void setMultiSelect(boolean multiSelect, BitSet selectedItems) {
+        this.multiSelect = multiSelect;
+        this.selectedItems = selectedItems;
+    }
+
+    /**
+     * @param position the position of the row in the list
+     * @return if the item of the row is selected in multi-select mode
+     */
+    boolean isItemSelected(int position) {
+        if (!multiSelect || selectedItems == null) {
+            return false;
+        }
+        int index = getItemIndex(position);
+        return index != -1 && selectedItems.get(index);
     }
 
     /**
-     * The first two positions must be empty.
-     * The last 2 positions must be empty too.
+     * This method sets the items which are disabled: they are shown with another color, can't be
+     * clicked and aren't selected when the list stops.
      *
-     * @param rawItems the items to show in panel
+     * @param disabledItems the indexes of the disabled items. It's shared with {@link
+     *                      PickerUIListView}, not copied.
      */
-    private void addEmptyRows(List<String> rawItems) {
+    void setDisabledItems(BitSet disabledItems) {
+        this.disabledItems = disabledItems;
+    }
 
-        List<String> emptyRows = Arrays.asList(EMPTY_STRING, EMPTY_STRING);
-        List<String> items = new ArrayList<String>();
-        items.addAll(emptyRows);
-        items.addAll(rawItems);
-        items.addAll(emptyRows);
+    /**
+     * @param index the index of the item
+     * @return if the item is disabled
+     */
+    boolean isItemDisabled(int index) {
+        return disabledItems != null && disabledItems.get(index);
+    }
 
-        this.items = items;
+    /**
+     * This method set if the elements can be clicked by the user.
+     *
+     * @param itemsClickables indicates whether the items are clickable or not.
+     */
+    public void setItemsClickables(boolean itemsClickables) {
+        this.itemsClickables = itemsClickables;
     }
 
     @Override
     public int getCount() {
-        return items.size();
+        int rowCount = getRowCount();
+        if (cyclic) {
+            return rowCount == 0 ? 0 : MAX_CYCLIC_COUNT - MAX_CYCLIC_COUNT % rowCount;
+        }
+        return rowCount + emptyRows * 2;
+    }
+
+    @Override
+    public String getItem(int position) {
+        int index = getItemIndex(position);
+        return index == -1 ? EMPTY_STRING : items.get(index);
     }
 
     /**
@@ -267,19 +957,20 @@ class PickerUIAdapter extends ArrayAdapter<String> {
      * <p>
      * if it is allowed that elements can be clicked, the first two positions and the last 2
      * positions can not be
-     * pressed.
+     * pressed. In multi-select mode, items can always be clicked. Disabled items can't be clicked.
      *
      * @param position the current position of the actual item
      * @return if this item is clickable
      */
     @Override
     public boolean isEnabled(int position) {
-        if (!itemsClickables) {
+        if (!itemsClickables && !multiSelect) {
             return false;
         }
         else {
 
-            boolean isClickable = positionsNoClickables.get(position, -1) == -1;
+            int index = getItemIndex(position);
+            boolean isClickable = index != -1 && !isItemDisabled(index);
             return isClickable && super.isEnabled(position);
         }
     }
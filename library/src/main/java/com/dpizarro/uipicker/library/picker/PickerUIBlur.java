@@ -0,0 +1,385 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import com.dpizarro.uipicker.library.R;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Blur effect of the background of the panel.
+ * <p>
+ * The content of the window under the panel is drawn in a small bitmap (reduced by the down scale
+ * factor) once the slide has finished, blurred in a background thread and shown with a fade when
+ * it's ready, so neither showing the panel nor the frames of the slide wait for it. The result is
+ * kept until the content of the window changes while the panel is hidden.
+ */
+class PickerUIBlur {
+
+    /**
+     * Iterations of the box blur. Three passes are close to a gaussian blur.
+     */
+    private static final int ITERATIONS = 3;
+
+    private static final ExecutorService executor = Executors
+        .newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PickerUI-blur");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private final Handler   mainHandler = new Handler(Looper.getMainLooper());
+    private final View      panel;
+    private final ImageView blurView;
+    private final int[]     location = new int[2];
+    private final int       fadeDuration;
+    private final int       slideDuration;
+
+    private int radius;
+    private int downScaleFactor;
+    private int filterColor;
+
+    private Bitmap  cachedBitmap;
+    private int     cachedWidth;
+    private int     cachedHeight;
+    private boolean capturing;
+    private boolean shown;
+    private int     generation;
+
+    private final Runnable mCaptureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (shown) {
+                startBlur();
+            }
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mLayoutListener =
+        new ViewTreeObserver.OnGlobalLayoutListener() {
+            @Override
+            public void onGlobalLayout() {
+                invalidateIfHidden();
+            }
+        };
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollListener =
+        new ViewTreeObserver.OnScrollChangedListener() {
+            @Override
+            public void onScrollChanged() {
+                invalidateIfHidden();
+            }
+        };
+
+    /**
+     * @param panel    the view whose background is blurred
+     * @param blurView the view to show the blurred background
+     */
+    PickerUIBlur(View panel, ImageView blurView) {
+        this.panel = panel;
+        this.blurView = blurView;
+        this.slideDuration = panel.getResources().getInteger(R.integer.animation_time);
+        this.fadeDuration = slideDuration / 2;
+    }
+
+    int getRadius() {
+        return radius;
+    }
+
+    void setRadius(int radius) {
+        if (this.radius != radius) {
+            this.radius = radius;
+            invalidate();
+        }
+    }
+
+    int getDownScaleFactor() {
+        return downScaleFactor;
+    }
+
+    void setDownScaleFactor(int downScaleFactor) {
+        if (this.downScaleFactor != downScaleFactor) {
+            this.downScaleFactor = downScaleFactor;
+            invalidate();
+        }
+    }
+
+    int getFilterColor() {
+        return filterColor;
+    }
+
+    void setFilterColor(int filterColor) {
+        this.filterColor = filterColor;
+        if (filterColor != 0) {
+            blurView.setColorFilter(filterColor, PorterDuff.Mode.SRC_ATOP);
+        }
+        else {
+            blurView.clearColorFilter();
+        }
+    }
+
+    /**
+     * @return if the content of the window is being drawn, to avoid to draw the panel itself.
+     */
+    boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * Shows the blurred background. If it isn't cached, the content is captured in a later frame
+     * and blurred in background; it's shown with a fade when it's ready.
+     *
+     * @param afterSlide if the panel is sliding, to capture the content when the slide has
+     *                   finished instead of in the next frame
+     */
+    void show(boolean afterSlide) {
+        shown = true;
+        if (isCached()) {
+            showBitmap(cachedBitmap);
+            return;
+        }
+
+        //Drawing the window takes longer than a frame, so it's never done in a frame of the slide
+        panel.removeCallbacks(mCaptureRunnable);
+        if (afterSlide) {
+            panel.postOnAnimationDelayed(mCaptureRunnable, slideDuration);
+        }
+        else {
+            panel.postOnAnimation(mCaptureRunnable);
+        }
+    }
+
+    private boolean isCached() {
+        return cachedBitmap != null && panel.getWidth() > 0 && cachedWidth == panel.getWidth()
+            && cachedHeight == panel.getHeight();
+    }
+
+    /**
+     * Captures the content and blurs it in background.
+     */
+    private void startBlur() {
+        if (panel.getWidth() == 0 || panel.getHeight() == 0) {
+            //Wait for the layout of the panel
+            panel.postOnAnimation(mCaptureRunnable);
+            return;
+        }
+        if (isCached()) {
+            showBitmap(cachedBitmap);
+            return;
+        }
+
+        final Bitmap bitmap = capture();
+        if (bitmap == null) {
+            return;
+        }
+        final int blurGeneration = ++generation;
+        final int blurRadius = radius;
+        final int width = panel.getWidth();
+        final int height = panel.getHeight();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                blur(bitmap, blurRadius);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (blurGeneration != generation) {
+                            //Invalidated while blurring
+                            return;
+                        }
+                        cachedBitmap = bitmap;
+                        cachedWidth = width;
+                        cachedHeight = height;
+                        if (shown) {
+                            showBitmap(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Hides the blurred background. From now on, the changes of the content invalidate the cache.
+     */
+    void hide() {
+        shown = false;
+        panel.removeCallbacks(mCaptureRunnable);
+        blurView.animate().cancel();
+        blurView.setVisibility(View.GONE);
+    }
+
+    /**
+     * Removes the cached background. It will be captured again next time.
+     */
+    void invalidate() {
+        generation++;
+        cachedBitmap = null;
+        if (!shown) {
+            blurView.setImageDrawable(null);
+        }
+    }
+
+    /**
+     * Removes the cached background when memory is low. It's captured again when the panel is
+     * shown.
+     *
+     * @param level the level given to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    void trimMemory(int level) {
+        if (CacheTrimmer.shouldTrim(level)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Listens to the changes of the content of the window while the panel is attached.
+     */
+    void onAttachedToWindow() {
+        ViewTreeObserver observer = panel.getViewTreeObserver();
+        observer.addOnGlobalLayoutListener(mLayoutListener);
+        observer.addOnScrollChangedListener(mScrollListener);
+    }
+
+    void onDetachedFromWindow() {
+        ViewTreeObserver observer = panel.getViewTreeObserver();
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(mLayoutListener);
+        }
+        else {
+            //noinspection deprecation
+            observer.removeGlobalOnLayoutListener(mLayoutListener);
+        }
+        observer.removeOnScrollChangedListener(mScrollListener);
+        invalidate();
+    }
+
+    private void invalidateIfHidden() {
+        if (!shown && cachedBitmap != null) {
+            invalidate();
+        }
+    }
+
+    private void showBitmap(Bitmap bitmap) {
+        blurView.setImageBitmap(bitmap);
+        if (blurView.getVisibility() != View.VISIBLE) {
+            blurView.setAlpha(0f);
+            blurView.setVisibility(View.VISIBLE);
+            blurView.animate().alpha(1f).setDuration(fadeDuration);
+        }
+    }
+
+    /**
+     * Draws the content of the window under the panel, reduced by the down scale factor.
+     */
+    private Bitmap capture() {
+        View root = panel.getRootView();
+        int scale = Math.max(1, downScaleFactor);
+        int width = Math.max(1, panel.getWidth() / scale);
+        int height = Math.max(1, panel.getHeight() / scale);
+
+        Bitmap bitmap;
+        try {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+
+        //The location without the translation of the slide animation
+        panel.getLocationInWindow(location);
+        int left = location[0] - (int) panel.getTranslationX();
+        int top = location[1] - (int) panel.getTranslationY();
+        root.getLocationInWindow(location);
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale(1f / scale, 1f / scale);
+        canvas.translate(location[0] - left, location[1] - top);
+
+        capturing = true;
+        try {
+            root.draw(canvas);
+        } finally {
+            capturing = false;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Blurs the bitmap with a box blur applied several times. Each pass blurs the rows and writes
+     * them transposed, so two passes blur in both directions.
+     */
+    private static void blur(Bitmap bitmap, int radius) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        int[] transposed = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            blurRowsTransposed(pixels, transposed, width, height, radius);
+            blurRowsTransposed(transposed, pixels, height, width, radius);
+        }
+
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    private static void blurRowsTransposed(int[] in, int[] out, int width, int height,
+                                           int radius) {
+        int size = radius * 2 + 1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int a = 0, r = 0, g = 0, b = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int pixel = in[row + Math.max(0, Math.min(width - 1, i))];
+                a += pixel >>> 24;
+                r += (pixel >> 16) & 0xff;
+                g += (pixel >> 8) & 0xff;
+                b += pixel & 0xff;
+            }
+
+            for (int x = 0; x < width; x++) {
+                out[x * height + y] = ((a / size) << 24) | ((r / size) << 16) | ((g / size) << 8)
+                    | (b / size);
+
+                int pixelOut = in[row + Math.max(0, x - radius)];
+                int pixelIn = in[row + Math.min(width - 1, x + radius + 1)];
+                a += (pixelIn >>> 24) - (pixelOut >>> 24);
+                r += ((pixelIn >> 16) & 0xff) - ((pixelOut >> 16) & 0xff);
+                g += ((pixelIn >> 8) & 0xff) - ((pixelOut >> 8) & 0xff);
+                b += (pixelIn & 0xff) - (pixelOut & 0xff);
+            }
+        }
+    }
+}
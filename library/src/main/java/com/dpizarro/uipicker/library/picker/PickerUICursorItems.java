@@ -0,0 +1,230 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * List of items read from a column of a {@link Cursor}, for lists too large to be copied.
+ * <p>
+ * Only a window of rows around the last item read is kept in memory. When the user scrolls near
+ * the edge of the window, the next rows are read in a background thread and the panel is
+ * refreshed when they are ready; until then the rows which aren't loaded are empty. It can be used
+ * anywhere a list of items is expected:
+ * <pre>
+ * mPickerUI.setItems(this, new PickerUICursorItems(cursor, "name"));
+ * </pre>
+ * The cursor is only used by this list from now on, and it's closed with {@link #close()}. The
+ * number of rows is read in the constructor, which can be slow for large queries, so it should be
+ * created out of the main thread. Reads out of the main thread, like the ones of the filter, read
+ * the cursor directly. The items aren't saved with the state of the panel.
+ */
+public class PickerUICursorItems extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * Default number of rows kept in memory.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 256;
+
+    private static final String EMPTY_STRING = "";
+
+    private static final ExecutorService executor = Executors
+        .newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PickerUI-cursor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object  cursorLock  = new Object();
+    private final Cursor  cursor;
+    private final int     columnIndex;
+    private final int     size;
+    private final int     windowSize;
+
+    private String[] window;
+    private int      windowStart;
+    private int      windowCount;
+    private Runnable windowListener;
+    private volatile int     requestedStart = -1;
+    private volatile boolean closed;
+
+    /**
+     * @param cursor     the cursor with the items
+     * @param columnName the name of the column with the text of the items
+     */
+    public PickerUICursorItems(Cursor cursor, String columnName) {
+        this(cursor, cursor.getColumnIndexOrThrow(columnName), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param cursor      the cursor with the items
+     * @param columnIndex the index of the column with the text of the items
+     * @param windowSize  the number of rows kept in memory
+     */
+    public PickerUICursorItems(Cursor cursor, int columnIndex, int windowSize) {
+        this.cursor = cursor;
+        this.columnIndex = columnIndex;
+        this.size = cursor.getCount();
+        this.windowSize = Math.max(1, windowSize);
+        this.window = new String[0];
+    }
+
+    /**
+     * Gets an item. In the main thread it never reads the cursor: if the item isn't in the window,
+     * the rows around it are loaded in background and an empty text is returned until then.
+     *
+     * @param index the index of the item
+     * @return the text of the item
+     */
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            return read(index);
+        }
+
+        int offset = index - windowStart;
+        if (offset < 0 || offset >= windowCount) {
+            requestWindow(index);
+            return EMPTY_STRING;
+        }
+
+        //Back in the current window: a request for a window which doesn't have the item is stale
+        int requested = requestedStart;
+        if (requested != -1 && (index < requested || index >= requested + windowSize)) {
+            requestedStart = -1;
+        }
+
+        //Load the next rows before reaching the edge of the window
+        int margin = windowSize / 4;
+        if ((offset < margin && windowStart > 0)
+            || (offset >= windowCount - margin && windowStart + windowCount < size)) {
+            requestWindow(index);
+        }
+        String item = window[offset];
+        return item != null ? item : EMPTY_STRING;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Closes the cursor. The items which aren't in memory are empty from now on.
+     */
+    public void close() {
+        closed = true;
+        synchronized (cursorLock) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sets the callback to refresh the panel when new rows are loaded.
+     *
+     * @param listener the callback, called in the main thread
+     */
+    void setWindowListener(Runnable listener) {
+        this.windowListener = listener;
+    }
+
+    /**
+     * Loads in background the window of rows centered in the index. A request which hasn't
+     * finished is replaced by the new one, or cancelled if the index is back in the current
+     * window.
+     */
+    private void requestWindow(int index) {
+        final int start = Math.max(0, Math.min(size - windowSize, index - windowSize / 2));
+        if (start == windowStart && windowCount > 0) {
+            //Back in the current window: a request for another one is stale
+            requestedStart = -1;
+            return;
+        }
+        if (start == requestedStart) {
+            return;
+        }
+        requestedStart = start;
+        final int count = Math.min(windowSize, size - start);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (requestedStart != start) {
+                    return;
+                }
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                final String[] rows = new String[count];
+                synchronized (cursorLock) {
+                    if (closed) {
+                        return;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        if (cursor.moveToPosition(start + i)) {
+                            rows[i] = cursor.getString(columnIndex);
+                        }
+                    }
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestedStart != start) {
+                            return;
+                        }
+                        requestedStart = -1;
+                        window = rows;
+                        windowStart = start;
+                        windowCount = count;
+                        if (windowListener != null) {
+                            windowListener.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads an item directly from the cursor, out of the main thread.
+     */
+    private String read(int index) {
+        synchronized (cursorLock) {
+            if (closed || !cursor.moveToPosition(index)) {
+                return EMPTY_STRING;
+            }
+            String item = cursor.getString(columnIndex);
+            return item != null ? item : EMPTY_STRING;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Filters the items of {@link PickerUIListView} in a background thread.
+ * <p>
+ * The indexes of the items which contain the query (ignoring case) are published in the main
+ * thread in chunks, as they are found. They are searched in the order of the rows, so the results
+ * of sorted items are sorted too. A new query cancels the previous one.
+ */
+class PickerUIFilter {
+
+    /**
+     * Time between two publications of the results, to show the first results quickly without
+     * refreshing the list for each match.
+     */
+    private static final long PUBLISH_INTERVAL_MS = 16;
+
+    private static final ExecutorService executor = Executors
+        .newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PickerUI-filter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final FilterListener listener;
+    private final AtomicInteger readers = new AtomicInteger();
+    private volatile int generation;
+
+    PickerUIFilter(FilterListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts to filter the items, cancelling the previous filter.
+     *
+     * @param items the items to filter
+     * @param order the indexes of the items in the order of the rows, or null if the rows follow
+     *              the order of the items
+     * @param query the text to search in the items
+     */
+    void filter(final List<String> items, final int[] order, final String query) {
+        cancel();
+        final int filterGeneration = generation;
+
+        readers.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    filter(items, order, query, filterGeneration);
+                } finally {
+                    readers.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private void filter(List<String> items, int[] order, String query, int filterGeneration) {
+        if (filterGeneration != generation) {
+            return;
+        }
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        int size = items.size();
+        int rowCount = order != null ? order.length : size;
+        int[] rows = new int[Math.min(rowCount, 1024)];
+        int count = 0;
+        int published = -1;
+        long lastPublish = SystemClock.uptimeMillis();
+
+        for (int row = 0; row < rowCount; row++) {
+            if (filterGeneration != generation) {
+                return;
+            }
+            int i = order != null ? order[row] : row;
+            if (i < size && contains(items.get(i), query)) {
+                if (count == rows.length) {
+                    int[] newRows = new int[Math.min(rowCount, rows.length * 2)];
+                    System.arraycopy(rows, 0, newRows, 0, count);
+                    rows = newRows;
+                }
+                rows[count++] = i;
+            }
+
+            long now = SystemClock.uptimeMillis();
+            if (count != published && now - lastPublish >= PUBLISH_INTERVAL_MS) {
+                publish(filterGeneration, rows, count, false);
+                published = count;
+                lastPublish = now;
+            }
+        }
+        publish(filterGeneration, rows, count, true);
+    }
+
+    /**
+     * Indicates whether a filter is reading the items in background. A cancelled filter reads
+     * them until it notices it.
+     *
+     * @return true if the items mustn't be modified
+     */
+    boolean isReading() {
+        return readers.get() > 0;
+    }
+
+    /**
+     * Cancels the filter in progress, if any. Its pending results aren't published.
+     */
+    void cancel() {
+        generation++;
+    }
+
+    /**
+     * Publishes in the main thread the indexes found. The array isn't copied: next matches are
+     * written after count, or in a new array.
+     */
+    private void publish(final int filterGeneration, final int[] rows, final int count,
+                         final boolean finished) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (filterGeneration == generation) {
+                    listener.onFilterResults(rows, count, finished);
+                }
+            }
+        });
+    }
+
+    /**
+     * Searches the query in the text, ignoring case, without allocating a lower case copy of each
+     * item.
+     */
+    private static boolean contains(String text, String query) {
+        if (text == null) {
+            return false;
+        }
+        int length = query.length();
+        for (int i = 0; i + length <= text.length(); i++) {
+            if (text.regionMatches(true, i, query, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Interface for a callback when there are results of the filter.
+     */
+    interface FilterListener {
+
+        /**
+         * Callback in the main thread with the results found until now.
+         *
+         * @param rows     indexes of the items which match the query, in the order of the rows
+         * @param count    number of valid indexes in rows
+         * @param finished whether the filter has finished
+         */
+        void onFilterResults(int[] rows, int count, boolean finished);
+    }
+}
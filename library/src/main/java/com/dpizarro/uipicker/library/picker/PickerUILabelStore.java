@@ -0,0 +1,223 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Immutable list of items which uses much less memory than a list of Strings, for very large
+ * lists.
+ * <p>
+ * All the texts are kept in one array of bytes, in Latin-1 if possible (one byte per character)
+ * or in UTF-8, with the offset of each one. A String is only created when an item is read, that
+ * is, when its row is shown. It can be used anywhere a list of items is expected:
+ * <pre>
+ * mPickerUI.setItems(this, PickerUILabelStore.copyOf(options));
+ * </pre>
+ */
+public final class PickerUILabelStore extends AbstractList<String>
+    implements RandomAccess, Parcelable {
+
+    public static final Parcelable.Creator<PickerUILabelStore> CREATOR
+        = new Parcelable.Creator<PickerUILabelStore>() {
+        public PickerUILabelStore createFromParcel(Parcel source) {
+            return new PickerUILabelStore(source);
+        }
+
+        public PickerUILabelStore[] newArray(int size) {
+            return new PickerUILabelStore[size];
+        }
+    };
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+    private static final Charset UTF_8   = Charset.forName("UTF-8");
+
+    private final byte[]  data;
+    private final int[]   offsets;
+    private final int     size;
+    private final boolean latin1;
+
+    private PickerUILabelStore(byte[] data, int[] offsets, int size, boolean latin1) {
+        this.data = data;
+        this.offsets = offsets;
+        this.size = size;
+        this.latin1 = latin1;
+    }
+
+    private PickerUILabelStore(Parcel in) {
+        this.size = in.readInt();
+        this.latin1 = in.readByte() != 0;
+        this.offsets = in.createIntArray();
+        this.data = in.createByteArray();
+    }
+
+    /**
+     * Creates a store with a copy of the items.
+     *
+     * @param items the items to copy
+     * @return the store with the items
+     */
+    public static PickerUILabelStore copyOf(Collection<String> items) {
+        Builder builder = new Builder(items.size());
+        for (String item : items) {
+            builder.add(item);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int start = offsets[index];
+        return new String(data, start, offsets[index + 1] - start, latin1 ? LATIN_1 : UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(size);
+        dest.writeByte(latin1 ? (byte) 1 : (byte) 0);
+        dest.writeIntArray(offsets);
+        dest.writeByteArray(data);
+    }
+
+    /**
+     * Builder to add the items one by one, without keeping them as Strings.
+     */
+    public static final class Builder {
+
+        private byte[]  data;
+        private int[]   offsets;
+        private int     size;
+        private int     length;
+        private boolean latin1 = true;
+
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * @param expectedSize the expected number of items, to avoid growing the arrays
+         */
+        public Builder(int expectedSize) {
+            offsets = new int[Math.max(expectedSize, 1) + 1];
+            data = new byte[Math.max(expectedSize, 1) * 8];
+        }
+
+        public Builder add(String item) {
+            if (item == null) {
+                item = "";
+            }
+            if (latin1 && !isLatin1(item)) {
+                convertToUtf8();
+            }
+
+            if (latin1) {
+                ensureData(length + item.length());
+                for (int i = 0; i < item.length(); i++) {
+                    data[length++] = (byte) item.charAt(i);
+                }
+            }
+            else {
+                byte[] bytes = item.getBytes(UTF_8);
+                ensureData(length + bytes.length);
+                System.arraycopy(bytes, 0, data, length, bytes.length);
+                length += bytes.length;
+            }
+
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++size] = length;
+            return this;
+        }
+
+        public PickerUILabelStore build() {
+            return new PickerUILabelStore(Arrays.copyOf(data, length),
+                Arrays.copyOf(offsets, size + 1), size, latin1);
+        }
+
+        private void ensureData(int capacity) {
+            if (capacity > data.length) {
+                data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+            }
+        }
+
+        /**
+         * The first item which isn't Latin-1 converts the items added before to UTF-8.
+         */
+        private void convertToUtf8() {
+            int extra = 0;
+            for (int i = 0; i < length; i++) {
+                if (data[i] < 0) {
+                    extra++;
+                }
+            }
+
+            byte[] newData = new byte[Math.max(data.length, length + extra) + extra];
+            int newLength = 0;
+            int item = 1;
+            for (int i = 0; i < length; i++) {
+                while (item <= size && offsets[item] == i) {
+                    offsets[item++] = newLength;
+                }
+                int c = data[i] & 0xff;
+                if (c < 0x80) {
+                    newData[newLength++] = (byte) c;
+                }
+                else {
+                    newData[newLength++] = (byte) (0xc0 | (c >> 6));
+                    newData[newLength++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            while (item <= size) {
+                offsets[item++] = newLength;
+            }
+
+            data = newData;
+            length = newLength;
+            latin1 = false;
+        }
+
+        private static boolean isLatin1(String item) {
+            for (int i = 0; i < item.length(); i++) {
+                if (item.charAt(i) > 0xff) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
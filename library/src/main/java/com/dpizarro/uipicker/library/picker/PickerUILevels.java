@@ -0,0 +1,251 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Levels of a hierarchy of items shown by {@link PickerUI}, one at a time.
+ * <p>
+ * The items of each level are loaded from a {@link PickerUI.PickerUILevelProvider} in a
+ * background thread. The last levels shown are kept in a {@link LruCache} with the item which was
+ * in the center, so going back to them is immediate and keeps their scroll.
+ */
+class PickerUILevels {
+
+    private static final String LOG_TAG = PickerUILevels.class.getSimpleName();
+
+    /**
+     * Default maximum number of levels kept in memory.
+     */
+    static final int DEFAULT_MAX_LEVELS = 16;
+
+    private static final ExecutorService executor = Executors
+        .newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PickerUI-levels");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private final Handler             mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<String>   stack       = new ArrayList<String>();
+    private final LevelListener       listener;
+    private final LruCache<String, Level> cache;
+    private PickerUI.PickerUILevelProvider provider;
+    private Level currentLevel;
+    private volatile int generation;
+
+    PickerUILevels(LevelListener listener) {
+        this.listener = listener;
+        this.cache = new LruCache<String, Level>(DEFAULT_MAX_LEVELS);
+    }
+
+    /**
+     * Sets the provider of the levels and opens the root level. The levels of the previous
+     * provider are removed.
+     *
+     * @param provider the provider of the levels, or null to remove the hierarchy
+     * @param rootKey  the key of the root level
+     */
+    void setProvider(PickerUI.PickerUILevelProvider provider, String rootKey) {
+        generation++;
+        cache.evictAll();
+        stack.clear();
+        currentLevel = null;
+        this.provider = provider;
+        if (provider != null) {
+            open(rootKey, true);
+        }
+    }
+
+    PickerUI.PickerUILevelProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * @return the key of the level shown, or null if there isn't any level
+     */
+    String getCurrentKey() {
+        return currentLevel != null ? currentLevel.key : null;
+    }
+
+    /**
+     * @return the number of levels opened, 1 in the root level
+     */
+    int getDepth() {
+        return stack.size();
+    }
+
+    /**
+     * Saves the item in the center of the level shown, to restore it when the level is shown
+     * again.
+     *
+     * @param centerIndex  the index of the item in the center
+     * @param centerOffset the distance between the center of its row and the center line
+     */
+    void saveCenter(int centerIndex, int centerOffset) {
+        if (currentLevel != null) {
+            currentLevel.centerIndex = centerIndex;
+            currentLevel.centerOffset = centerOffset;
+        }
+    }
+
+    /**
+     * Opens a child level of the level shown.
+     *
+     * @param key the key of the level
+     */
+    void openChild(String key) {
+        open(key, true);
+    }
+
+    /**
+     * Goes back to the parent level. The level shown is removed from the stack when the parent
+     * is shown, so the depth doesn't change if it can't be loaded.
+     *
+     * @return false if the level shown is the root level
+     */
+    boolean openParent() {
+        if (stack.size() <= 1) {
+            return false;
+        }
+        open(stack.get(stack.size() - 2), false);
+        return true;
+    }
+
+    /**
+     * Shows a level from the cache, or loads it in background. A level requested before is
+     * cancelled.
+     *
+     * @param push true to add the level to the stack, false to remove the level shown from the
+     *             stack, when the parent level is opened
+     */
+    private void open(final String key, final boolean push) {
+        final int levelGeneration = ++generation;
+        Level level = cache.get(key);
+        if (level != null) {
+            show(level, push);
+            return;
+        }
+
+        final PickerUI.PickerUILevelProvider levelProvider = provider;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (levelGeneration != generation) {
+                    return;
+                }
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                List<String> items = null;
+                try {
+                    items = levelProvider.loadLevel(key);
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Error while loading the level " + key, e);
+                }
+
+                final List<String> levelItems = items;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (levelGeneration != generation || levelItems == null) {
+                            return;
+                        }
+                        Level level = new Level(key, levelItems);
+                        cache.put(key, level);
+                        show(level, push);
+                    }
+                });
+            }
+        });
+    }
+
+    private void show(Level level, boolean push) {
+        if (push) {
+            stack.add(level.key);
+        }
+        else {
+            stack.remove(stack.size() - 1);
+        }
+        currentLevel = level;
+        listener.onLevelReady(level.key, level.items, level.centerIndex, level.centerOffset);
+    }
+
+    /**
+     * Removes levels from memory when the system asks for it. The level shown is kept, and the
+     * others are loaded again when needed, without their scroll.
+     *
+     * @param level the level given to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    void trimMemory(int level) {
+        if (CacheTrimmer.shouldClear(level)) {
+            cache.evictAll();
+            if (currentLevel != null) {
+                cache.put(currentLevel.key, currentLevel);
+            }
+        }
+        else if (CacheTrimmer.shouldTrim(level)) {
+            CacheTrimmer.trimToHalf(cache);
+        }
+    }
+
+    /**
+     * Items of a level and the item which was in the center the last time it was shown.
+     */
+    private static final class Level {
+
+        final String       key;
+        final List<String> items;
+        int centerIndex = -1;
+        int centerOffset;
+
+        Level(String key, List<String> items) {
+            this.key = key;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Interface for a callback when a level is ready to be shown.
+     */
+    interface LevelListener {
+
+        /**
+         * Callback in the main thread when a level has been loaded or taken from the cache.
+         *
+         * @param key          the key of the level
+         * @param items        the items of the level
+         * @param centerIndex  the index of the item which was in the center, or -1 if it's the
+         *                     first time the level is shown
+         * @param centerOffset the distance between the center of its row and the center line
+         */
+        void onLevelReady(String key, List<String> items, int centerIndex, int centerOffset);
+    }
+}
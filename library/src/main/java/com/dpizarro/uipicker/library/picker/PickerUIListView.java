@@ -3,17 +3,22 @@ package com.dpizarro.uipicker.library.picker;
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.Typeface;
-import android.os.Handler;
 import android.util.AttributeSet;
+import android.view.InputDevice;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.AdapterView;
+import android.widget.ImageView;
 import android.widget.ListView;
 
 import com.dpizarro.uipicker.library.R;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /*
@@ -33,14 +38,100 @@ import java.util.List;
  */
 class PickerUIListView extends ListView {
 
-    private final static int ROW_HEIGHT = 40;
+    /**
+     * Time to give the adapter to draw the views before notifying the selection.
+     */
+    private final static int NOTIFY_DELAY = 200;
+
+    /**
+     * Values of the items at the edges of the panel in wheel mode.
+     */
+    private final static float WHEEL_MAX_ROTATION = 55;
+    private final static float WHEEL_MIN_SCALE    = (float) 0.7;
+    private final static float WHEEL_MIN_ALPHA    = (float) 0.2;
+
+    /**
+     * Acceleration of the steps with keys and rotary encoders: a held key moves one more item per
+     * step every KEY_ACCELERATION_REPEATS repeats, and a rotary encoder moves one more item per
+     * step every ROTARY_ACCELERATION_EVENTS events received in less than ROTARY_FAST_INTERVAL ms.
+     */
+    private final static int  KEY_ACCELERATION_REPEATS   = 8;
+    private final static int  ROTARY_ACCELERATION_EVENTS = 6;
+    private final static long ROTARY_FAST_INTERVAL       = 50;
+    private final static int  MAX_STEP                   = 10;
+
+    /**
+     * Constants of MotionEvent and InputDevice which aren't available in the SDK used to compile.
+     */
+    private final static int AXIS_SCROLL           = 26;
+    private final static int SOURCE_ROTARY_ENCODER = 0x00400000;
+
     private PickerUIItemClickListener mItemClickListenerPickerUI;
     private PickerUIAdapter           mPickerUIAdapter;
     private boolean scrollEnabled = false;
     private int lastPositionNotified;
-    private int firstItem, scrollTop;
+    private int rowHeight;
+    private int emptyRows = PickerUIAdapter.DEFAULT_EMPTY_ROWS;
+    private boolean centerSet;
+    private int centerOffset;
     private List<String> items;
     private int          which;
+    private PickerUI.PickerUIIconProvider mIconProvider;
+    private boolean wheelMode;
+    private boolean cyclic;
+    private boolean multiSelect;
+    private boolean multiLine;
+    private boolean autoFitText;
+    private boolean sortedByLocale;
+    private PickerUISorter mSorter;
+    private List<String>   sortItems;
+    private int[]          sortRows;
+    private int[]          sortRanks;
+    private final BitSet selectedItems = new BitSet();
+    private final BitSet disabledItems = new BitSet();
+    private PickerUI.PickerUISelectionListener mSelectionListener;
+    private PickerUIFilter mFilter;
+    private String         filterQuery;
+    private int            filterAnchor;
+    private PickerUIRowPool mRowPool = new PickerUIRowPool();
+    private int notifyIndex;
+    private int pendingScrollIndex = -1;
+    private int pendingScrollDuration;
+    private boolean pendingScrollJumped;
+    private boolean stoppingScroll;
+    private int pendingSteps;
+    private float rotarySteps;
+    private int fastRotaryEvents;
+    private long lastRotaryEventTime;
+
+    private final Runnable mStepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applySteps();
+        }
+    };
+
+    private final Runnable mSmoothScrollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startSmoothScroll();
+        }
+    };
+
+    private final Runnable mNotifySelectionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            //We need to give the adapter time to draw the views
+            if (mItemClickListenerPickerUI == null) {
+                throw new IllegalStateException(
+                    "You must assign a valid PickerUIListView.PickerUIItemClickListener first!");
+            }
+            if (items != null && notifyIndex < items.size()) {
+                mItemClickListenerPickerUI
+                    .onItemClickItemPickerUI(which, notifyIndex, items.get(notifyIndex));
+            }
+        }
+    };
 
     /**
      * Default constructor
@@ -111,13 +202,14 @@ class PickerUIListView extends ListView {
         }
         List<String> entriesList = Arrays.asList(entries);
         mPickerUIAdapter = new PickerUIAdapter(context, R.layout.pickerui_item, entriesList,
-            entriesList.size() / 2, true, null, true);
+            entriesList.size() / 2, true, false, null, new PickerUIRowPool(), true);
         setAdapter(mPickerUIAdapter);
         setSelection(entriesList.size() / 2);
     }
 
     private void init(List<String> items) {
         this.items = items;
+        this.rowHeight = getResources().getDimensionPixelSize(R.dimen.height_normal_item_pickerui);
 
         ViewTreeObserver observer = getViewTreeObserver();
         observer.addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
@@ -126,8 +218,9 @@ class PickerUIListView extends ListView {
                 //This will be called as the layout is finished, prior to displaying.
                 scrollEnabled = true;
 
-                if (PickerUIListView.this.items != null) {
-                    selectListItem(PickerUIListView.this.items.size() / 2, false);
+                //The center set before the first layout is already applied
+                if (PickerUIListView.this.items != null && !centerSet) {
+                    selectListItem(mPickerUIAdapter.getCenterPosition(), false);
                 }
 
                 if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
@@ -144,38 +237,39 @@ class PickerUIListView extends ListView {
         setOnScrollListener(new OnScrollListener() {
             @Override
             public void onScrollStateChanged(AbsListView view, int scrollState) {
-                if (scrollState == 0) {
-                    getItemInListCenter();
-                    if (scrollTop < -ROW_HEIGHT) {
-                        mPickerUIAdapter.handleSelectEvent(firstItem + 1 + 2);
-                        selectListItem(firstItem + 1);
-                    }
-                    else {
-                        selectListItem(firstItem);
+                if (scrollState == SCROLL_STATE_IDLE && !stoppingScroll) {
+                    int centerPosition = computeCenterPosition();
+                    if (centerPosition == -1) {
+                        return;
                     }
+                    centerPosition = getNearestEnabledPosition(centerPosition);
+                    setCenterPosition(centerPosition);
+                    selectListItem(centerPosition);
                 }
             }
 
             @Override
             public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
                                  int totalItemCount) {
-                // save index and top position
-                View v = getChildAt(0);
-
-                //Required to select the closest item when finger releases scroll
-                scrollTop = (v == null) ? 0 : v.getTop();
-                firstItem = firstVisibleItem;
-
                 if (scrollEnabled) {
                     getItemInListCenter();
                 }
+
+                if (wheelMode) {
+                    applyWheelTransform();
+                }
             }
         });
 
         setOnItemClickListener(new OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                setNewPositionCenter(position);
+                if (multiSelect) {
+                    toggleItem(position, view);
+                }
+                else {
+                    setNewPositionCenter(position);
+                }
             }
         });
     }
@@ -189,15 +283,700 @@ class PickerUIListView extends ListView {
      * @param idRequestPickerUI id of the element
      * @param position          position to set in the center of the list
      * @param itemsClickables   indicates whether the items are clickable or not.
+     * @param typeFacePath      path of the font in assets
      */
     public void setItems(Context context, List<String> items, int idRequestPickerUI, int position,
                          boolean itemsClickables, String typeFacePath) {
+        if (this.items != items && !selectedItems.isEmpty()) {
+            //The indexes of the selection belong to the previous items
+            changeSelection(0, selectedItems.length(), false);
+        }
+        if (this.items != items) {
+            disabledItems.clear();
+        }
         this.items = items;
         this.which = idRequestPickerUI;
         Typeface typeFace = FontCache.get(typeFacePath, context);
+        releaseRows();
         mPickerUIAdapter = new PickerUIAdapter(context, R.layout.pickerui_item, items, position,
-            itemsClickables, typeFace, false);
+            itemsClickables, cyclic, typeFace, mRowPool, false);
+        mPickerUIAdapter.setRowHeight(rowHeight);
+        mPickerUIAdapter.setEmptyRows(emptyRows);
+        mPickerUIAdapter.setIconProvider(mIconProvider);
+        mPickerUIAdapter.setWheelMode(wheelMode);
+        mPickerUIAdapter.setMultiSelect(multiSelect, selectedItems);
+        mPickerUIAdapter.setDisabledItems(disabledItems);
+        mPickerUIAdapter.setMultiLine(multiLine, getDividerHeight());
+        mPickerUIAdapter.setAutoFitText(autoFitText);
+        if (sortedByLocale) {
+            if (sortItems == items) {
+                //The items have been sorted before, like a level shown again
+                mPickerUIAdapter.setOrder(sortRows, sortRanks);
+            }
+            else {
+                startSort();
+            }
+        }
         setAdapter(mPickerUIAdapter);
+        watchItems(items);
+
+        if (mFilter != null) {
+            mFilter.cancel();
+        }
+        if (filterQuery != null && filterQuery.length() > 0) {
+            filterAnchor = position;
+            startFilter();
+        }
+    }
+
+    /**
+     * Replaces the items with an updated version, refreshing the adapter once instead of creating
+     * a new one. The selection, the disabled items and the filter are kept for the items which
+     * still exist.
+     *
+     * @param items the updated items
+     */
+    void swapItems(List<String> items) {
+        if (mPickerUIAdapter == null || this.items == null) {
+            return;
+        }
+        int oldSize = this.items.size();
+        int size = items.size();
+        this.items = items;
+
+        if (size < oldSize) {
+            disabledItems.clear(size, oldSize);
+            if (selectedItems.length() > size) {
+                changeSelection(size, selectedItems.length(), false);
+            }
+        }
+
+        mPickerUIAdapter.swapItems(items);
+        watchItems(items);
+        if (sortedByLocale) {
+            //Only the new and changed items are sorted
+            startSort();
+        }
+        int index = mPickerUIAdapter.getItemIndex(mPickerUIAdapter.getCenterPosition());
+        if (size != oldSize) {
+            centerItem(index);
+        }
+
+        if (filterQuery != null && filterQuery.length() > 0) {
+            if (index != -1) {
+                filterAnchor = index;
+            }
+            startFilter();
+        }
+    }
+
+    /**
+     * The items read from a cursor are loaded in background, so the rows are bound again when new
+     * rows are ready.
+     */
+    private void watchItems(List<String> items) {
+        if (items instanceof PickerUICursorItems) {
+            final PickerUICursorItems cursorItems = (PickerUICursorItems) items;
+            cursorItems.setWindowListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (PickerUIListView.this.items == cursorItems && mPickerUIAdapter != null) {
+                        mPickerUIAdapter.notifyDataSetChanged();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets the pool of views of the items, which can be shared with other panels.
+     *
+     * @param rowPool the pool of views and styles of the items
+     */
+    void setRowPool(PickerUIRowPool rowPool) {
+        if (mRowPool == rowPool) {
+            return;
+        }
+        releaseRows();
+        mRowPool = rowPool;
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.setRowPool(rowPool);
+            mPickerUIAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Removes the keys of the sort when the system asks for it. The pool of views, which can be
+     * shared, is trimmed once by {@link CacheTrimmer}.
+     *
+     * @param level the level given to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    void trimMemory(int level) {
+        if (mSorter != null) {
+            mSorter.trimMemory(level);
+        }
+    }
+
+    /**
+     * Indicates whether the filter or the sort are reading the items in background.
+     *
+     * @return true if the items mustn't be modified in place
+     */
+    boolean isReadingItems() {
+        return (mSorter != null && mSorter.isReading()) || (mFilter != null && mFilter.isReading());
+    }
+
+    /**
+     * When the panel is detached from the window, its views are given to the pool to be reused by
+     * other panels. They are created again when the panel is attached.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (getChildCount() > 0 && mPickerUIAdapter != null) {
+            //Keep the scroll to fill the list again in the same position when it's attached
+            int firstPosition = getFirstVisiblePosition();
+            int top = getChildAt(0).getTop();
+            releaseRows();
+            setAdapter(mPickerUIAdapter);
+            setSelectionFromTop(firstPosition, top);
+        }
+    }
+
+    /**
+     * Removes the views of the items from the list and from its recycler, and gives them to the
+     * pool. The adapter is removed, so the recycler doesn't keep views which can be used by another
+     * panel: it must be set again after.
+     */
+    private void releaseRows() {
+        if (getAdapter() == null) {
+            return;
+        }
+        List<View> rows = new ArrayList<View>();
+        //The children and the scrap views of the recycler
+        reclaimViews(rows);
+        //Resetting the adapter empties the recycler and the views with transient state
+        setAdapter(null);
+        for (View row : rows) {
+            //A pending icon must not be set in a row used by another panel
+            ImageView iconItem = (ImageView) row.findViewById(R.id.iv_item);
+            if (iconItem != null) {
+                IconCache.cancel(iconItem);
+            }
+            mRowPool.releaseRow(row);
+        }
+    }
+
+    /**
+     * Filters the items in background, showing only the items which contain the query. Results are
+     * shown as they are found, keeping in the center the closest item to the current one. A new
+     * query cancels the previous filter.
+     *
+     * @param query the text to search in the items, or null to show all the items
+     */
+    void setFilter(String query) {
+        filterQuery = query;
+        if (mPickerUIAdapter == null || items == null) {
+            return;
+        }
+
+        int index = getItemInListCenter();
+        if (index != -1) {
+            filterAnchor = index;
+        }
+
+        if (query == null || query.length() == 0) {
+            if (mFilter != null) {
+                mFilter.cancel();
+            }
+            mPickerUIAdapter.setRows(null, 0);
+            centerItem(filterAnchor);
+        }
+        else {
+            startFilter();
+        }
+    }
+
+    String getFilter() {
+        return filterQuery;
+    }
+
+    private void startFilter() {
+        if (mFilter == null) {
+            mFilter = new PickerUIFilter(new PickerUIFilter.FilterListener() {
+                @Override
+                public void onFilterResults(int[] rows, int count, boolean finished) {
+                    mPickerUIAdapter.setRows(rows, count);
+                    centerItem(filterAnchor);
+                }
+            });
+        }
+        mFilter.filter(items, mPickerUIAdapter.getOrder(), filterQuery);
+    }
+
+    /**
+     * Sorts the items by the collation of the default locale, in background. Until the first sort
+     * finishes, the items are shown in their order. The indexes of the items don't change.
+     *
+     * @param sortedByLocale indicates whether the items are sorted or not.
+     */
+    void setSortedByLocale(boolean sortedByLocale) {
+        if (this.sortedByLocale == sortedByLocale) {
+            return;
+        }
+        this.sortedByLocale = sortedByLocale;
+        if (mPickerUIAdapter == null || items == null) {
+            return;
+        }
+
+        if (sortedByLocale) {
+            startSort();
+        }
+        else {
+            mSorter.clear();
+            sortItems = null;
+            sortRows = null;
+            sortRanks = null;
+            setOrder(null, null);
+        }
+    }
+
+    private void startSort() {
+        if (mSorter == null) {
+            mSorter = new PickerUISorter(new PickerUISorter.SortListener() {
+                @Override
+                public void onSortResults(List<String> sortedItems, int[] rows, int[] ranks) {
+                    if (sortedItems != items || mPickerUIAdapter == null) {
+                        return;
+                    }
+                    sortItems = sortedItems;
+                    sortRows = rows;
+                    sortRanks = ranks;
+                    setOrder(rows, ranks);
+                }
+            });
+        }
+        mSorter.sort(items);
+    }
+
+    /**
+     * Shows the items in a new order, keeping the item in the center. The filter runs again to
+     * give its results in the new order.
+     */
+    private void setOrder(int[] rows, int[] ranks) {
+        int index = mPickerUIAdapter.getItemIndex(mPickerUIAdapter.getCenterPosition());
+        mPickerUIAdapter.setOrder(rows, ranks);
+        centerItem(index);
+
+        if (filterQuery != null && filterQuery.length() > 0) {
+            if (index != -1) {
+                filterAnchor = index;
+            }
+            startFilter();
+        }
+    }
+
+    /**
+     * Sets in the center the row of an item, or the closest one if it isn't shown, without
+     * notifying {@link PickerUI}. If the item is disabled, the closest enabled item is set instead.
+     * A pending smooth scroll is cancelled.
+     *
+     * @param index the index of the item
+     */
+    void centerItem(int index) {
+        cancelSmoothScroll();
+        int position = getNearestEnabledPosition(
+            mPickerUIAdapter.getListPosition(Math.max(0, index)));
+        lastPositionNotified = position;
+        centerSet = true;
+        setCenterPosition(position);
+        setSelectionCenter(position);
+    }
+
+    /**
+     * Sets in the center the row of an item, at a distance of the center line, without notifying
+     * {@link PickerUI}. It's used to restore the exact scroll saved with {@link
+     * PickerUIListView#getItemInListCenter()} and {@link PickerUIListView#getCenterOffset()}: the
+     * rows are placed in the next layout pass, even if the list hasn't been laid out yet.
+     *
+     * @param index  the index of the item
+     * @param offset the distance in pixels between the center of the row and the center line
+     */
+    void restoreCenter(int index, int offset) {
+        if (mPickerUIAdapter == null || items == null || index < 0 || index >= items.size()) {
+            return;
+        }
+        cancelSmoothScroll();
+        int position = mPickerUIAdapter.getListPosition(index);
+        lastPositionNotified = position;
+        centerSet = true;
+        setCenterPosition(position);
+
+        centerOffset = offset;
+        setSelectionFromTop(position, getCenterTop(position) + offset);
+    }
+
+    /**
+     * Places a row in the center of the list in the next layout pass. With rows of the same
+     * height, it's the first visible row which is set.
+     *
+     * @param position the position of the row in the list
+     */
+    private void setSelectionCenter(int position) {
+        if (mPickerUIAdapter.hasVariableHeights()) {
+            setSelectionFromTop(position, getCenterTop(position));
+        }
+        else {
+            setSelection(position - mPickerUIAdapter.getEmptyRows());
+        }
+    }
+
+    /**
+     * @param position the position of the row in the list
+     * @return the top of the row when it's in the center of the list
+     */
+    private int getCenterTop(int position) {
+        //Before the first layout, the height is the one set by PickerUI from the rows
+        int height = getHeight() > 0 ? getHeight() : (emptyRows * 2 + 1) * getRowPitch();
+        int rowPitch = mPickerUIAdapter.hasVariableHeights()
+            ? mPickerUIAdapter.getPositionPitch(position) : getRowPitch();
+        return height / 2 - rowPitch / 2;
+    }
+
+    /**
+     * Sets the height of the rows and the number of visible rows. The empty rows at each end are
+     * the half of the visible rows, so the first and the last items can be in the center. The item
+     * in the center is kept.
+     *
+     * @param rowHeight   the height of the rows in pixels
+     * @param visibleRows the number of visible rows, odd
+     */
+    void setGeometry(int rowHeight, int visibleRows) {
+        int emptyRows = visibleRows / 2;
+        if (this.rowHeight == rowHeight && this.emptyRows == emptyRows) {
+            return;
+        }
+        this.rowHeight = rowHeight;
+        this.emptyRows = emptyRows;
+
+        if (mPickerUIAdapter != null && items != null) {
+            int index = mPickerUIAdapter.getItemIndex(mPickerUIAdapter.getCenterPosition());
+            mPickerUIAdapter.setRowHeight(rowHeight);
+            mPickerUIAdapter.setEmptyRows(emptyRows);
+            mPickerUIAdapter.notifyDataSetChanged();
+            centerItem(index);
+        }
+    }
+
+    /**
+     * Enables the rows with several lines of text, with the height that each one needs. The item
+     * in the center is kept.
+     *
+     * @param multiLine indicates whether the rows can have several lines or not.
+     */
+    void setMultiLine(boolean multiLine) {
+        if (this.multiLine == multiLine) {
+            return;
+        }
+        this.multiLine = multiLine;
+
+        if (mPickerUIAdapter != null && items != null) {
+            int index = mPickerUIAdapter.getItemIndex(mPickerUIAdapter.getCenterPosition());
+            mPickerUIAdapter.setMultiLine(multiLine, getDividerHeight());
+            mPickerUIAdapter.notifyDataSetChanged();
+            centerItem(index);
+        }
+    }
+
+    /**
+     * Enables the auto-fit mode: the text size of the items which don't fit the width of the row
+     * is reduced, instead of ellipsizing them.
+     *
+     * @param autoFitText indicates whether the auto-fit mode is enabled or not.
+     */
+    void setAutoFitText(boolean autoFitText) {
+        if (this.autoFitText == autoFitText) {
+            return;
+        }
+        this.autoFitText = autoFitText;
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.setAutoFitText(autoFitText);
+            mPickerUIAdapter.refreshVisibleRows(this);
+        }
+    }
+
+    /**
+     * Sets the provider of the icons of the rows. It's kept for the next items too.
+     *
+     * @param iconProvider the provider of the icons, or null to show only the text
+     */
+    void setIconProvider(PickerUI.PickerUIIconProvider iconProvider) {
+        mIconProvider = iconProvider;
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.setIconProvider(iconProvider);
+            mPickerUIAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Enables the cyclic mode: after the last item, the list continues with the first one. The item
+     * in the center is kept.
+     *
+     * @param cyclic indicates whether the list is cyclic or not.
+     */
+    void setCyclic(boolean cyclic) {
+        this.cyclic = cyclic;
+        if (mPickerUIAdapter != null && mPickerUIAdapter.isCyclic() != cyclic) {
+            mPickerUIAdapter.setCyclic(cyclic);
+            lastPositionNotified = mPickerUIAdapter.getCenterPosition();
+            selectListItem(mPickerUIAdapter.getCenterPosition(), false);
+        }
+    }
+
+    /**
+     * Enables the multi-select mode: clicking an item selects or deselects it, instead of moving
+     * it to the center.
+     *
+     * @param multiSelect indicates whether the multi-select mode is enabled or not.
+     */
+    void setMultiSelect(boolean multiSelect) {
+        if (this.multiSelect == multiSelect) {
+            return;
+        }
+        this.multiSelect = multiSelect;
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.setMultiSelect(multiSelect, selectedItems);
+            mPickerUIAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Selects or deselects the items in the range [fromIndex, toIndex). The range is clamped to the
+     * items, so it's ignored if there aren't items yet.
+     *
+     * @param fromIndex index of the first item
+     * @param toIndex   index after the last item
+     * @param selected  indicates whether the items are selected or deselected
+     */
+    void setItemsSelected(int fromIndex, int toIndex, boolean selected) {
+        if (items == null) {
+            return;
+        }
+        fromIndex = Math.max(0, fromIndex);
+        toIndex = Math.min(items.size(), toIndex);
+        if (fromIndex >= toIndex) {
+            return;
+        }
+
+        if (changeSelection(fromIndex, toIndex, selected) && mPickerUIAdapter != null) {
+            mPickerUIAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Changes the selection of the items in the range [fromIndex, toIndex), notifying only the
+     * runs of items whose selection changes.
+     *
+     * @return if any item has changed
+     */
+    private boolean changeSelection(int fromIndex, int toIndex, boolean selected) {
+        boolean changed = false;
+        int start = selected ? selectedItems.nextClearBit(fromIndex)
+                             : selectedItems.nextSetBit(fromIndex);
+        while (start != -1 && start < toIndex) {
+            int end = selected ? selectedItems.nextSetBit(start)
+                               : selectedItems.nextClearBit(start);
+            if (end == -1 || end > toIndex) {
+                end = toIndex;
+            }
+            selectedItems.set(start, end, selected);
+            notifySelectionChanged(start, end, selected);
+            changed = true;
+            start = selected ? selectedItems.nextClearBit(end) : selectedItems.nextSetBit(end);
+        }
+        return changed;
+    }
+
+    BitSet getSelectedItems() {
+        return selectedItems;
+    }
+
+    /**
+     * Enables or disables the items in the range [fromIndex, toIndex). Disabled items can't be
+     * clicked and the list never stops on them. The range is clamped to the items, so it's ignored
+     * if there aren't items yet.
+     *
+     * @param fromIndex index of the first item
+     * @param toIndex   index after the last item
+     * @param enabled   indicates whether the items are enabled or disabled
+     */
+    void setItemsEnabled(int fromIndex, int toIndex, boolean enabled) {
+        if (items == null) {
+            return;
+        }
+        fromIndex = Math.max(0, fromIndex);
+        toIndex = Math.min(items.size(), toIndex);
+        if (fromIndex >= toIndex) {
+            return;
+        }
+
+        disabledItems.set(fromIndex, toIndex, !enabled);
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.notifyDataSetChanged();
+        }
+    }
+
+    BitSet getDisabledItems() {
+        return disabledItems;
+    }
+
+    /**
+     * Gets the closest row to the position whose item is enabled. It's used to skip the disabled
+     * items when the list stops.
+     *
+     * @param position the position of the row in the list
+     * @return the position of the closest enabled item, or the same position if there isn't any
+     */
+    private int getNearestEnabledPosition(int position) {
+        int index = mPickerUIAdapter.getItemIndex(position);
+        if (index == -1 || !disabledItems.get(index)) {
+            return position;
+        }
+
+        int size = items.size();
+        int next = disabledItems.nextClearBit(index);
+        int previous = index;
+        while (previous >= 0 && disabledItems.get(previous)) {
+            previous--;
+        }
+
+        if (cyclic) {
+            //Continue searching from the other end of the list
+            if (next >= size) {
+                next = size + disabledItems.nextClearBit(0);
+            }
+            if (previous < 0) {
+                previous = size - 1;
+                while (previous > index && disabledItems.get(previous)) {
+                    previous--;
+                }
+                previous -= size;
+            }
+        }
+
+        boolean hasNext = next < (cyclic ? size + index : size);
+        boolean hasPrevious = previous >= (cyclic ? index - size + 1 : 0);
+        if (hasNext && (!hasPrevious || next - index <= index - previous)) {
+            return position + next - index;
+        }
+        else if (hasPrevious) {
+            return position - (index - previous);
+        }
+        return position;
+    }
+
+    /**
+     * Selects or deselects the item clicked by the user in multi-select mode.
+     *
+     * @param position the position of the row in the list
+     * @param view     the view of the row
+     */
+    private void toggleItem(int position, View view) {
+        int index = mPickerUIAdapter.getItemIndex(position);
+        if (index == -1) {
+            return;
+        }
+        boolean selected = !selectedItems.get(index);
+        selectedItems.set(index, selected);
+        view.setActivated(selected);
+        notifySelectionChanged(index, index + 1, selected);
+    }
+
+    private void notifySelectionChanged(int fromIndex, int toIndex, boolean selected) {
+        if (mSelectionListener != null) {
+            mSelectionListener.onSelectionChanged(fromIndex, toIndex, selected);
+        }
+    }
+
+    /**
+     * Set a callback listener for the changes of the selection in multi-select mode.
+     *
+     * @param listener Callback instance.
+     */
+    void setOnSelectionChangedListener(PickerUI.PickerUISelectionListener listener) {
+        this.mSelectionListener = listener;
+    }
+
+    /**
+     * Enables the wheel mode: rotation, scale and alpha of each item are calculated from its
+     * distance to the center every time the list scrolls.
+     *
+     * @param wheelMode indicates whether the wheel mode is enabled or not.
+     */
+    void setWheelMode(boolean wheelMode) {
+        if (this.wheelMode == wheelMode) {
+            return;
+        }
+        this.wheelMode = wheelMode;
+
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.setWheelMode(wheelMode);
+            mPickerUIAdapter.notifyDataSetChanged();
+        }
+
+        if (wheelMode) {
+            applyWheelTransform();
+        }
+        else {
+            for (int i = 0; i < getChildCount(); i++) {
+                resetWheelTransform(getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * Applies to each visible item the rotation, scale and alpha depending on the exact distance
+     * between its center and the center of the list. Only render properties are changed, so the
+     * items aren't bound or measured again.
+     */
+    private void applyWheelTransform() {
+        float center = getHeight() / 2f;
+        if (center == 0) {
+            return;
+        }
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            float childCenter = (child.getTop() + child.getBottom()) / 2f;
+
+            //-1 in the top edge, 0 in the center and 1 in the bottom edge
+            float offset = Math.max(-1, Math.min(1, (childCenter - center) / center));
+            float distance = Math.abs(offset);
+            float scale = 1 - (1 - WHEEL_MIN_SCALE) * distance;
+
+            child.setRotationX(-offset * WHEEL_MAX_ROTATION);
+            child.setScaleX(scale);
+            child.setScaleY(scale);
+            child.setAlpha(1 - (1 - WHEEL_MIN_ALPHA) * distance);
+        }
+    }
+
+    /**
+     * Removes the transformation of the wheel mode of an item.
+     *
+     * @param view the view of the item
+     */
+    static void resetWheelTransform(View view) {
+        if (view.getRotationX() != 0) {
+            view.setRotationX(0);
+        }
+        if (view.getScaleX() != 1 || view.getScaleY() != 1) {
+            view.setScaleX(1);
+            view.setScaleY(1);
+        }
+        if (view.getAlpha() != 1) {
+            view.setAlpha(1);
+        }
     }
 
     /**
@@ -210,24 +989,14 @@ class PickerUIListView extends ListView {
      * @param notify   indicates whether to notify the selection of an item
      */
     private void selectListItem(final int position, final boolean notify) {
-        setSelection(position);
-
-        if (notify) {
-            final Handler handler = new Handler();
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    //We need to give the adapter time to draw the views
-                    if (mItemClickListenerPickerUI == null) {
-                        throw new IllegalStateException(
-                            "You must assign a valid PickerUIListView.PickerUIItemClickListener first!");
-                    }
-                    mItemClickListenerPickerUI
-                        .onItemClickItemPickerUI(which, position, items.get(position));
-
-                }
-            }, 200);
+        setSelectionCenter(position);
 
+        int index = mPickerUIAdapter.getItemIndex(position);
+        if (notify && index != -1) {
+            //The same runnable is used for each selection, and a pending one is replaced
+            notifyIndex = index;
+            removeCallbacks(mNotifySelectionRunnable);
+            postDelayed(mNotifySelectionRunnable, NOTIFY_DELAY);
         }
     }
 
@@ -240,34 +1009,415 @@ class PickerUIListView extends ListView {
         selectListItem(position, true);
     }
 
+    /**
+     * Scrolls smoothly until the item is in the center. Calls received in the same frame are
+     * merged, and only the last one is animated. If the item is far away, the list jumps first to
+     * a near row, so the animation only draws the last rows.
+     *
+     * @param index      the index of the item
+     * @param durationMs the duration of the animation in milliseconds
+     */
+    void smoothScrollToItem(int index, int durationMs) {
+        pendingScrollIndex = index;
+        pendingScrollDuration = durationMs;
+        pendingScrollJumped = false;
+        removeCallbacks(mSmoothScrollRunnable);
+        postOnAnimation(mSmoothScrollRunnable);
+    }
+
+    /**
+     * Cancels the pending or running smooth scroll.
+     */
+    void cancelSmoothScroll() {
+        if (pendingScrollIndex != -1) {
+            pendingScrollIndex = -1;
+            removeCallbacks(mSmoothScrollRunnable);
+        }
+        //Stops the running animation, if any. The list goes idle where it is, but it mustn't snap
+        //or notify that row: the caller is about to move it somewhere else
+        stoppingScroll = true;
+        smoothScrollBy(0, 0);
+        stoppingScroll = false;
+    }
+
+    private void startSmoothScroll() {
+        int index = pendingScrollIndex;
+        if (index == -1 || mPickerUIAdapter == null) {
+            return;
+        }
+
+        int currentPosition = computeCenterPosition();
+        if (currentPosition == -1) {
+            //The list isn't laid out, nothing to animate
+            centerItem(index);
+            return;
+        }
+
+        int targetPosition = getNearestEnabledPosition(mPickerUIAdapter.getListPosition(index));
+        int rows = targetPosition - currentPosition;
+        int maxRows = getChildCount();
+        if (Math.abs(rows) > maxRows && !pendingScrollJumped) {
+            //Jump to one screen away from the item, and animate in the next frame after the layout
+            pendingScrollJumped = true;
+            setSelection(targetPosition - (rows > 0 ? maxRows : -maxRows)
+                - mPickerUIAdapter.getEmptyRows());
+            postOnAnimation(mSmoothScrollRunnable);
+            return;
+        }
+
+        pendingScrollIndex = -1;
+        smoothScrollBy(getScrollDistance(currentPosition, targetPosition) + centerOffset,
+            pendingScrollDuration);
+    }
+
+    /**
+     * @return the distance between the centers of two rows. With rows of different heights, the
+     * rows which haven't been measured yet have the default height, and the list is snapped to the
+     * center when the scroll stops.
+     */
+    private int getScrollDistance(int fromPosition, int toPosition) {
+        if (!mPickerUIAdapter.hasVariableHeights()) {
+            return (toPosition - fromPosition) * getRowPitch();
+        }
+        long from = mPickerUIAdapter.getPositionTop(fromPosition)
+            + mPickerUIAdapter.getPositionPitch(fromPosition) / 2;
+        long to = mPickerUIAdapter.getPositionTop(toPosition)
+            + mPickerUIAdapter.getPositionPitch(toPosition) / 2;
+        return (int) (to - from);
+    }
+
+    /**
+     * A touch of the user cancels the smooth scroll.
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        if (ev.getActionMasked() == MotionEvent.ACTION_DOWN && pendingScrollIndex != -1) {
+            pendingScrollIndex = -1;
+            removeCallbacks(mSmoothScrollRunnable);
+        }
+        return super.onTouchEvent(ev);
+    }
+
+    /**
+     * D-pad and keyboard keys move the items in the center one by one, faster when the key is held.
+     * The center key selects the item in the center, or toggles it in multi-select mode.
+     */
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (mPickerUIAdapter == null || items == null) {
+            return super.onKeyDown(keyCode, event);
+        }
+
+        int step = Math.min(MAX_STEP, 1 + event.getRepeatCount() / KEY_ACCELERATION_REPEATS);
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_UP:
+                addSteps(-step);
+                return true;
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+                addSteps(step);
+                return true;
+            case KeyEvent.KEYCODE_PAGE_UP:
+                addSteps(-Math.max(1, getChildCount() - 1));
+                return true;
+            case KeyEvent.KEYCODE_PAGE_DOWN:
+                addSteps(Math.max(1, getChildCount() - 1));
+                return true;
+            case KeyEvent.KEYCODE_DPAD_CENTER:
+            case KeyEvent.KEYCODE_ENTER:
+                if (event.getRepeatCount() == 0) {
+                    selectCenterItem();
+                }
+                return true;
+            default:
+                return super.onKeyDown(keyCode, event);
+        }
+    }
+
+    /**
+     * Rotary encoders and mouse wheels move the items in the center one by one, faster when they
+     * are turned quickly.
+     */
+    @Override
+    public boolean onGenericMotionEvent(MotionEvent event) {
+        if (mPickerUIAdapter == null || items == null
+            || event.getActionMasked() != MotionEvent.ACTION_SCROLL) {
+            return super.onGenericMotionEvent(event);
+        }
+
+        float delta;
+        if ((event.getSource() & SOURCE_ROTARY_ENCODER) == SOURCE_ROTARY_ENCODER) {
+            delta = -event.getAxisValue(AXIS_SCROLL);
+        }
+        else if ((event.getSource() & InputDevice.SOURCE_CLASS_POINTER) != 0) {
+            delta = -event.getAxisValue(MotionEvent.AXIS_VSCROLL);
+        }
+        else {
+            return super.onGenericMotionEvent(event);
+        }
+        if (delta == 0) {
+            return super.onGenericMotionEvent(event);
+        }
+
+        if (event.getEventTime() - lastRotaryEventTime < ROTARY_FAST_INTERVAL) {
+            fastRotaryEvents++;
+        }
+        else {
+            fastRotaryEvents = 0;
+        }
+        lastRotaryEventTime = event.getEventTime();
+
+        //Fractions of a step are kept for the next events
+        int step = Math.min(MAX_STEP, 1 + fastRotaryEvents / ROTARY_ACCELERATION_EVENTS);
+        rotarySteps += delta * step;
+        int steps = (int) rotarySteps;
+        if (steps != 0) {
+            rotarySteps -= steps;
+            addSteps(steps);
+        }
+        return true;
+    }
+
+    /**
+     * Adds steps to move the center. All the steps received before the next frame are applied at
+     * once.
+     *
+     * @param steps the number of items to move, negative to move up
+     */
+    private void addSteps(int steps) {
+        if (pendingSteps == 0) {
+            cancelSmoothScroll();
+            removeCallbacks(mStepRunnable);
+            postOnAnimation(mStepRunnable);
+        }
+        pendingSteps += steps;
+    }
+
+    /**
+     * Moves the center the accumulated steps with one update of the list, skipping the disabled
+     * items. The item is notified when the steps stop.
+     */
+    private void applySteps() {
+        int steps = pendingSteps;
+        pendingSteps = 0;
+        if (steps == 0 || mPickerUIAdapter == null || mPickerUIAdapter.getRowCount() == 0) {
+            return;
+        }
+
+        int count = mPickerUIAdapter.getCount();
+        int first = mPickerUIAdapter.isCyclic() ? 0 : mPickerUIAdapter.getEmptyRows();
+        int last = mPickerUIAdapter.isCyclic() ? count - 1
+            : mPickerUIAdapter.getEmptyRows() + mPickerUIAdapter.getRowCount() - 1;
+        int center = mPickerUIAdapter.getCenterPosition();
+        int position = (int) Math.max(first, Math.min(last, (long) center + steps));
+
+        //Continue in the same direction while the item is disabled
+        int target = findEnabledPosition(position, steps > 0 ? 1 : -1, first, last);
+        if (target == -1) {
+            target = getNearestEnabledPosition(position);
+        }
+        if (target == center) {
+            return;
+        }
+
+        lastPositionNotified = target;
+        setCenterPosition(target);
+        //The notification is replaced by each step, so it's sent when the steps stop
+        selectListItem(target);
+    }
+
+    /**
+     * Finds the first row from a position, in a direction, whose item is enabled. The search is
+     * limited to one repetition of the rows, so it ends in cyclic mode even if all the items are
+     * disabled. When the rows show the items in order, the next enabled item is found in the
+     * indexes of the disabled items instead of row by row.
+     *
+     * @param position  the position of the row to start
+     * @param direction 1 to search forward, -1 to search backward
+     * @param first     the first position which can be returned
+     * @param last      the last position which can be returned
+     * @return the position of the row, or -1 if there isn't any between first and last
+     */
+    private int findEnabledPosition(int position, int direction, int first, int last) {
+        int index = mPickerUIAdapter.getItemIndex(position);
+        if (index == -1 || !disabledItems.get(index)) {
+            return position;
+        }
+
+        if (direction > 0 && mPickerUIAdapter.hasItemOrder()) {
+            int size = items.size();
+            int next = disabledItems.nextClearBit(index);
+            if (next >= size) {
+                if (!cyclic) {
+                    return -1;
+                }
+                //Continue from the first item, in the next repetition of the rows
+                next = disabledItems.nextClearBit(0);
+                if (next >= index) {
+                    return -1;
+                }
+                next += size;
+            }
+            long target = (long) position + next - index;
+            return target <= last ? (int) target : -1;
+        }
+
+        int rowCount = mPickerUIAdapter.getRowCount();
+        for (int i = 0; i < rowCount; i++) {
+            position += direction;
+            if (position < first || position > last) {
+                return -1;
+            }
+            if (!isPositionDisabled(position)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isPositionDisabled(int position) {
+        int index = mPickerUIAdapter.getItemIndex(position);
+        return index != -1 && disabledItems.get(index);
+    }
+
+    /**
+     * Selects the item in the center with a key: it's toggled in multi-select mode, or notified
+     * now.
+     */
+    private void selectCenterItem() {
+        removeCallbacks(mStepRunnable);
+        applySteps();
+        int position = mPickerUIAdapter.getCenterPosition();
+        int index = mPickerUIAdapter.getItemIndex(position);
+        if (index == -1 || disabledItems.get(index)) {
+            return;
+        }
+
+        if (multiSelect) {
+            View view = getChildAt(position - getFirstVisiblePosition());
+            if (view != null) {
+                toggleItem(position, view);
+            }
+        }
+        else {
+            removeCallbacks(mNotifySelectionRunnable);
+            notifyIndex = index;
+            mNotifySelectionRunnable.run();
+        }
+    }
+
+    /**
+     * Saves the position of the center in {@link PickerUIAdapter} and sets the style of the visible
+     * items, without binding them again.
+     *
+     * @param position the position of the row in the center of the list
+     */
+    void setCenterPosition(int position) {
+        mPickerUIAdapter.handleSelectEvent(position);
+        if (!wheelMode) {
+            //In wheel mode the style doesn't depend on the center
+            mPickerUIAdapter.refreshVisibleRows(this);
+        }
+    }
+
+    /**
+     * Sets the style of the visible items again, after a change of colors or states.
+     */
+    void refreshVisibleRows() {
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.refreshVisibleRows(this);
+        }
+    }
+
     /**
      * Method to select an item and notify to {@link PickerUIAdapter} to set the style.
      *
      * @param position the position to select in the list and to set in the center
      */
     private void setNewPositionCenter(int position) {
-        mPickerUIAdapter.handleSelectEvent(position);
-        selectListItem(position - 2);
+        setCenterPosition(position);
+        selectListItem(position);
     }
 
     /**
      * When the user is scrolling and stops, we need to get the item in the center of the list, save
      * this position and
      * notify to adapter.
+     *
+     * @return the index of the item in the center, or -1 if there isn't any item
      */
     public int getItemInListCenter() {
 
-        int position = pointToPosition(getWidth() / 2, getHeight() / 2);
+        int position = computeCenterPosition();
         if (position != -1) {
 
             if (position != lastPositionNotified) {
 
                 //Only refresh adapter on different positions
                 lastPositionNotified = position;
-                mPickerUIAdapter.handleSelectEvent(position);
+                setCenterPosition(position);
             }
+            return mPickerUIAdapter.getItemIndex(position);
         }
-        return position - 2;
+        return -1;
+    }
+
+    /**
+     * Gets the row in the center line of the list from the first visible row, its top, and the
+     * height of the rows plus the height of the divider. It's used on each scroll event instead of
+     * a hit test over the views, and it also saves in {@link PickerUIListView#centerOffset} the
+     * distance between the center of this row and the center line.
+     *
+     * @return the position of the row in the center, or -1 if there aren't rows
+     */
+    private int computeCenterPosition() {
+        int rowPitch = getRowPitch();
+        if (getChildCount() == 0 || mPickerUIAdapter == null || rowPitch <= 0) {
+            centerOffset = 0;
+            return -1;
+        }
+        if (mPickerUIAdapter.hasVariableHeights()) {
+            return computeVariableCenterPosition();
+        }
+
+        //Distance from the top of the first visible row to the center line
+        int distance = getHeight() / 2 - getChildAt(0).getTop();
+        int rows = distance >= 0 ? distance / rowPitch : -1 - (-distance - 1) / rowPitch;
+        centerOffset = rows * rowPitch + rowPitch / 2 - distance;
+
+        int position = getFirstVisiblePosition() + rows;
+        return Math.max(0, Math.min(mPickerUIAdapter.getCount() - 1, position));
+    }
+
+    /**
+     * Gets the row in the center line when the rows have different heights. The distance between
+     * the top of the list and the center line comes from the first visible row, and the row at
+     * this distance is searched in the prefix sums of the heights, in O(log n).
+     *
+     * @return the position of the row in the center
+     */
+    private int computeVariableCenterPosition() {
+        long center = mPickerUIAdapter.getPositionTop(getFirstVisiblePosition())
+            - getChildAt(0).getTop() + getHeight() / 2;
+        int position = Math.max(0, Math.min(mPickerUIAdapter.getCount() - 1,
+            mPickerUIAdapter.getPositionAt(center)));
+        centerOffset = (int) (mPickerUIAdapter.getPositionTop(position)
+            + mPickerUIAdapter.getPositionPitch(position) / 2 - center);
+        return position;
+    }
+
+    /**
+     * @return the distance between the tops of two consecutive rows
+     */
+    int getRowPitch() {
+        return rowHeight + getDividerHeight();
+    }
+
+    /**
+     * @return the distance in pixels between the center of the row in the center and the center
+     * line, calculated by the last call to {@link PickerUIListView#getItemInListCenter()}.
+     */
+    int getCenterOffset() {
+        return centerOffset;
     }
 
     PickerUIAdapter getPickerUIAdapter() {
@@ -0,0 +1,149 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.content.Context;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.dpizarro.uipicker.library.R;
+
+import java.util.ArrayList;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Pool of views of the items and of their resolved styles.
+ * <p>
+ * Each {@link PickerUI} has its own pool by default. Several panels of the same Activity can share
+ * one pool with {@link PickerUI#setRowPool(PickerUIRowPool)}: when a panel is detached from the
+ * window or its items change, its views go to the pool and are reused by the other panels instead
+ * of inflating new ones.
+ */
+public class PickerUIRowPool {
+
+    /**
+     * Default maximum number of views kept in the pool.
+     */
+    public static final int DEFAULT_MAX_ROWS = 24;
+
+    private final int             maxRows;
+    private final ArrayList<View> rows;
+    private final SparseArray<ItemTextStyle> styles = new SparseArray<ItemTextStyle>();
+    private Context stylesContext;
+
+    /**
+     * Creates a pool with {@link PickerUIRowPool#DEFAULT_MAX_ROWS}.
+     */
+    public PickerUIRowPool() {
+        this(DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * @param maxRows maximum number of views kept in the pool
+     */
+    public PickerUIRowPool(int maxRows) {
+        this.maxRows = maxRows;
+        this.rows = new ArrayList<View>(maxRows);
+        CacheTrimmer.track(this);
+    }
+
+    /**
+     * Removes all the views and styles of the pool.
+     */
+    public void clear() {
+        rows.clear();
+        styles.clear();
+        stylesContext = null;
+    }
+
+    /**
+     * @return the number of views in the pool
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Removes views and styles from the pool when the system asks for it. They are created again
+     * when needed. It's called once per event by {@link CacheTrimmer}, even if the pool is shared
+     * by several panels.
+     *
+     * @param level the level given to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    void trimMemory(int level) {
+        if (CacheTrimmer.shouldClear(level)) {
+            clear();
+        }
+        else if (CacheTrimmer.shouldTrim(level)) {
+            rows.subList(0, rows.size() / 2).clear();
+            styles.clear();
+            stylesContext = null;
+        }
+    }
+
+    /**
+     * Gets a view of an item from the pool, or inflates a new one if there isn't any view created
+     * with the same context.
+     *
+     * @param context the context of the list
+     * @param parent  the list
+     * @return the view of an item
+     */
+    View acquireRow(Context context, ViewGroup parent) {
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (rows.get(i).getContext() == context) {
+                return rows.remove(i);
+            }
+        }
+        LayoutInflater inflater = (LayoutInflater) context
+            .getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        return inflater.inflate(R.layout.pickerui_item, parent, false);
+    }
+
+    /**
+     * Gives back a view of an item which has been removed from its list.
+     *
+     * @param row the view of an item, without parent
+     */
+    void releaseRow(View row) {
+        if (rows.size() < maxRows && row.getParent() == null && !rows.contains(row)) {
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Gets a style resolved with the context. Styles are resolved only once for all the panels
+     * which share the pool.
+     *
+     * @param context  the context of the list
+     * @param styleRes the style of the items
+     * @return the resolved style
+     */
+    ItemTextStyle getStyle(Context context, int styleRes) {
+        if (stylesContext != context) {
+            styles.clear();
+            stylesContext = context;
+        }
+        ItemTextStyle style = styles.get(styleRes);
+        if (style == null) {
+            style = ItemTextStyle.resolve(context, styleRes);
+            styles.put(styleRes, style);
+        }
+        return style;
+    }
+}
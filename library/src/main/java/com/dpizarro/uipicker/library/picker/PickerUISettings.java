@@ -39,12 +39,73 @@ public class PickerUISettings implements Parcelable {
      * Default behaviour of items
      */
     public static boolean DEFAULT_ITEMS_CLICKABLES = true;
+
+    /**
+     * Types of list of items in the Parcel
+     */
+    private static final int ITEMS_STRING_LIST = 0;
+    private static final int ITEMS_LABEL_STORE = 1;
+    private static final int ITEMS_NOT_SAVED   = 2;
+
+    /**
+     * Default style of items
+     */
+    public static boolean DEFAULT_WHEEL_MODE = false;
+    /**
+     * Default behaviour of the list
+     */
+    public static boolean DEFAULT_CYCLIC = false;
+    /**
+     * Default selection of items
+     */
+    public static boolean DEFAULT_MULTI_SELECT = false;
+    /**
+     * Default number of visible rows. The half of them are empty rows at each end of the list.
+     */
+    public static int DEFAULT_VISIBLE_ROWS = 5;
+    /**
+     * Default height of the rows: all of them have the same height, with one line of text
+     */
+    public static boolean DEFAULT_MULTI_LINE = false;
+    /**
+     * Default size of the text which doesn't fit the rows: it's ellipsized
+     */
+    public static boolean DEFAULT_AUTO_FIT_TEXT = false;
+    /**
+     * Default order of items: the order of the list
+     */
+    public static boolean DEFAULT_SORTED_BY_LOCALE = false;
+    /**
+     * Default blur effect of the background of the panel
+     */
+    public static boolean DEFAULT_USE_BLUR = false;
+    /**
+     * Default radius of the blur effect, between blur_radius_min and blur_radius_max
+     */
+    public static int DEFAULT_BLUR_RADIUS = 15;
+    /**
+     * Default down scale factor of the background to blur, between blur_downscale_min and
+     * blur_downscale_max
+     */
+    public static int DEFAULT_BLUR_DOWNSCALE_FACTOR = 4;
     private List<String> mItems;
     private int mColorTextCenter;
     private int mColorTextNoCenter;
     private int mBackgroundColor;
     private int mLinesColor;
     private boolean mItemsClickables;
+    private boolean mWheelMode;
+    private boolean mCyclic;
+    private boolean mMultiSelect;
+    private int mRowHeight;
+    private int mVisibleRows;
+    private boolean mMultiLine;
+    private boolean mAutoFitText;
+    private boolean mSortedByLocale;
+    private boolean mUseBlur;
+    private int mBlurRadius;
+    private int mBlurDownScaleFactor;
+    private int mBlurFilterColor;
 
     private PickerUISettings(Builder builder) {
         setItems(builder.mItems);
@@ -53,21 +114,83 @@ public class PickerUISettings implements Parcelable {
         setBackgroundColor(builder.mBackgroundColor);
         setLinesColor(builder.mLinesColor);
         setItemsClickables(builder.mItemsClickables);
+        setWheelMode(builder.mWheelMode);
+        setCyclic(builder.mCyclic);
+        setMultiSelect(builder.mMultiSelect);
+        setRowHeight(builder.mRowHeight);
+        setVisibleRows(builder.mVisibleRows);
+        setMultiLine(builder.mMultiLine);
+        setAutoFitText(builder.mAutoFitText);
+        setSortedByLocale(builder.mSortedByLocale);
+        setUseBlur(builder.mUseBlur);
+        setBlurRadius(builder.mBlurRadius);
+        setBlurDownScaleFactor(builder.mBlurDownScaleFactor);
+        setBlurFilterColor(builder.mBlurFilterColor);
+    }
+
+    private PickerUISettings(PickerUISettings settings, List<String> items) {
+        this.mItems = items;
+        this.mColorTextCenter = settings.mColorTextCenter;
+        this.mColorTextNoCenter = settings.mColorTextNoCenter;
+        this.mBackgroundColor = settings.mBackgroundColor;
+        this.mLinesColor = settings.mLinesColor;
+        this.mItemsClickables = settings.mItemsClickables;
+        this.mWheelMode = settings.mWheelMode;
+        this.mCyclic = settings.mCyclic;
+        this.mMultiSelect = settings.mMultiSelect;
+        this.mRowHeight = settings.mRowHeight;
+        this.mVisibleRows = settings.mVisibleRows;
+        this.mMultiLine = settings.mMultiLine;
+        this.mAutoFitText = settings.mAutoFitText;
+        this.mSortedByLocale = settings.mSortedByLocale;
+        this.mUseBlur = settings.mUseBlur;
+        this.mBlurRadius = settings.mBlurRadius;
+        this.mBlurDownScaleFactor = settings.mBlurDownScaleFactor;
+        this.mBlurFilterColor = settings.mBlurFilterColor;
     }
 
     private PickerUISettings(Parcel in) {
-        in.readStringList(this.mItems);
+        int itemsType = in.readInt();
+        if (itemsType == ITEMS_LABEL_STORE) {
+            this.mItems = in.readParcelable(PickerUILabelStore.class.getClassLoader());
+        }
+        else if (itemsType == ITEMS_STRING_LIST) {
+            this.mItems = in.createStringArrayList();
+        }
         this.mColorTextCenter = in.readInt();
         this.mColorTextNoCenter = in.readInt();
         this.mBackgroundColor = in.readInt();
         this.mLinesColor = in.readInt();
         this.mItemsClickables = in.readByte() != 0;
+        this.mWheelMode = in.readByte() != 0;
+        this.mCyclic = in.readByte() != 0;
+        this.mMultiSelect = in.readByte() != 0;
+        this.mRowHeight = in.readInt();
+        this.mVisibleRows = in.readInt();
+        this.mMultiLine = in.readByte() != 0;
+        this.mAutoFitText = in.readByte() != 0;
+        this.mSortedByLocale = in.readByte() != 0;
+        this.mUseBlur = in.readByte() != 0;
+        this.mBlurRadius = in.readInt();
+        this.mBlurDownScaleFactor = in.readInt();
+        this.mBlurFilterColor = in.readInt();
     }
 
     public List<String> getItems() {
         return mItems;
     }
 
+    /**
+     * Copies the settings with other items, like the items updated in the panel, without
+     * modifying these settings.
+     *
+     * @param items the items of the copy
+     * @return the new settings
+     */
+    PickerUISettings copyWithItems(List<String> items) {
+        return new PickerUISettings(this, items);
+    }
+
     void setItems(List<String> items) {
         mItems = items;
     }
@@ -112,6 +235,102 @@ public class PickerUISettings implements Parcelable {
         mItemsClickables = itemsClickables;
     }
 
+    public boolean isWheelMode() {
+        return mWheelMode;
+    }
+
+    void setWheelMode(boolean wheelMode) {
+        mWheelMode = wheelMode;
+    }
+
+    public boolean isCyclic() {
+        return mCyclic;
+    }
+
+    void setCyclic(boolean cyclic) {
+        mCyclic = cyclic;
+    }
+
+    public boolean isMultiSelect() {
+        return mMultiSelect;
+    }
+
+    void setMultiSelect(boolean multiSelect) {
+        mMultiSelect = multiSelect;
+    }
+
+    public int getRowHeight() {
+        return mRowHeight;
+    }
+
+    void setRowHeight(int rowHeight) {
+        mRowHeight = rowHeight;
+    }
+
+    public int getVisibleRows() {
+        return mVisibleRows;
+    }
+
+    void setVisibleRows(int visibleRows) {
+        mVisibleRows = visibleRows;
+    }
+
+    public boolean isMultiLine() {
+        return mMultiLine;
+    }
+
+    void setMultiLine(boolean multiLine) {
+        mMultiLine = multiLine;
+    }
+
+    public boolean isAutoFitText() {
+        return mAutoFitText;
+    }
+
+    void setAutoFitText(boolean autoFitText) {
+        mAutoFitText = autoFitText;
+    }
+
+    public boolean isSortedByLocale() {
+        return mSortedByLocale;
+    }
+
+    void setSortedByLocale(boolean sortedByLocale) {
+        mSortedByLocale = sortedByLocale;
+    }
+
+    public boolean isUseBlur() {
+        return mUseBlur;
+    }
+
+    void setUseBlur(boolean useBlur) {
+        mUseBlur = useBlur;
+    }
+
+    public int getBlurRadius() {
+        return mBlurRadius;
+    }
+
+    void setBlurRadius(int blurRadius) {
+        mBlurRadius = blurRadius;
+    }
+
+    public int getBlurDownScaleFactor() {
+        return mBlurDownScaleFactor;
+    }
+
+    void setBlurDownScaleFactor(int blurDownScaleFactor) {
+        mBlurDownScaleFactor = blurDownScaleFactor;
+    }
+
+    public int getBlurFilterColor() {
+        return mBlurFilterColor;
+    }
+
+    void setBlurFilterColor(int blurFilterColor) {
+        mBlurFilterColor = blurFilterColor;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -119,12 +338,36 @@ public class PickerUISettings implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeList(this.mItems);
+        if (this.mItems instanceof PickerUILabelStore) {
+            //Keep the compact store, instead of writing each item
+            dest.writeInt(ITEMS_LABEL_STORE);
+            dest.writeParcelable((PickerUILabelStore) this.mItems, flags);
+        }
+        else if (this.mItems instanceof PickerUICursorItems) {
+            //Reading the whole cursor is too slow, the app sets it again
+            dest.writeInt(ITEMS_NOT_SAVED);
+        }
+        else {
+            dest.writeInt(ITEMS_STRING_LIST);
+            dest.writeStringList(this.mItems);
+        }
         dest.writeInt(this.mColorTextCenter);
         dest.writeInt(this.mColorTextNoCenter);
         dest.writeInt(this.mBackgroundColor);
         dest.writeInt(this.mLinesColor);
         dest.writeByte(mItemsClickables ? (byte) 1 : (byte) 0);
+        dest.writeByte(mWheelMode ? (byte) 1 : (byte) 0);
+        dest.writeByte(mCyclic ? (byte) 1 : (byte) 0);
+        dest.writeByte(mMultiSelect ? (byte) 1 : (byte) 0);
+        dest.writeInt(this.mRowHeight);
+        dest.writeInt(this.mVisibleRows);
+        dest.writeByte(mMultiLine ? (byte) 1 : (byte) 0);
+        dest.writeByte(mAutoFitText ? (byte) 1 : (byte) 0);
+        dest.writeByte(mSortedByLocale ? (byte) 1 : (byte) 0);
+        dest.writeByte(mUseBlur ? (byte) 1 : (byte) 0);
+        dest.writeInt(this.mBlurRadius);
+        dest.writeInt(this.mBlurDownScaleFactor);
+        dest.writeInt(this.mBlurFilterColor);
     }
 
     public static final class Builder {
@@ -135,6 +378,18 @@ public class PickerUISettings implements Parcelable {
         private int mBackgroundColor            = R.color.background_panel_pickerui;
         private int mLinesColor                 = R.color.lines_panel_pickerui;
         private boolean mItemsClickables        = DEFAULT_ITEMS_CLICKABLES;
+        private boolean mWheelMode              = DEFAULT_WHEEL_MODE;
+        private boolean mCyclic                 = DEFAULT_CYCLIC;
+        private boolean mMultiSelect            = DEFAULT_MULTI_SELECT;
+        private int mRowHeight                  = R.dimen.height_normal_item_pickerui;
+        private int mVisibleRows                = DEFAULT_VISIBLE_ROWS;
+        private boolean mMultiLine              = DEFAULT_MULTI_LINE;
+        private boolean mAutoFitText            = DEFAULT_AUTO_FIT_TEXT;
+        private boolean mSortedByLocale         = DEFAULT_SORTED_BY_LOCALE;
+        private boolean mUseBlur                = DEFAULT_USE_BLUR;
+        private int mBlurRadius                 = DEFAULT_BLUR_RADIUS;
+        private int mBlurDownScaleFactor        = DEFAULT_BLUR_DOWNSCALE_FACTOR;
+        private int mBlurFilterColor;
 
         public Builder() {
         }
@@ -171,6 +426,66 @@ public class PickerUISettings implements Parcelable {
             return this;
         }
 
+        public Builder withWheelMode(boolean mWheelMode) {
+            this.mWheelMode = mWheelMode;
+            return this;
+        }
+
+        public Builder withCyclic(boolean mCyclic) {
+            this.mCyclic = mCyclic;
+            return this;
+        }
+
+        public Builder withMultiSelect(boolean mMultiSelect) {
+            this.mMultiSelect = mMultiSelect;
+            return this;
+        }
+
+        public Builder withRowHeight(int mRowHeight) {
+            this.mRowHeight = mRowHeight;
+            return this;
+        }
+
+        public Builder withVisibleRows(int mVisibleRows) {
+            this.mVisibleRows = mVisibleRows;
+            return this;
+        }
+
+        public Builder withMultiLine(boolean mMultiLine) {
+            this.mMultiLine = mMultiLine;
+            return this;
+        }
+
+        public Builder withAutoFitText(boolean mAutoFitText) {
+            this.mAutoFitText = mAutoFitText;
+            return this;
+        }
+
+        public Builder withSortedByLocale(boolean mSortedByLocale) {
+            this.mSortedByLocale = mSortedByLocale;
+            return this;
+        }
+
+        public Builder withUseBlur(boolean mUseBlur) {
+            this.mUseBlur = mUseBlur;
+            return this;
+        }
+
+        public Builder withBlurRadius(int mBlurRadius) {
+            this.mBlurRadius = mBlurRadius;
+            return this;
+        }
+
+        public Builder withBlurDownScaleFactor(int mBlurDownScaleFactor) {
+            this.mBlurDownScaleFactor = mBlurDownScaleFactor;
+            return this;
+        }
+
+        public Builder withBlurFilterColor(int mBlurFilterColor) {
+            this.mBlurFilterColor = mBlurFilterColor;
+            return this;
+        }
+
         public PickerUISettings build() {
             return new PickerUISettings(this);
         }
@@ -0,0 +1,287 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Sorts the items of {@link PickerUIListView} by the collation of the default locale, in a
+ * background thread.
+ * <p>
+ * The items aren't moved: the result is the order of their indexes. The {@link CollationKey} of
+ * each item is computed once and kept with the order, so when the items are updated only the new
+ * and changed items get a new key, and they are merged into the previous order in O(n + k log k)
+ * instead of sorting all the items again. A new request cancels the previous one.
+ * <p>
+ * A key keeps the text of its item, which is used to find the changed items, so the items aren't
+ * copied. With a {@link PickerUILabelStore}, the sort still keeps a String and a key for each
+ * item: the memory of the sorted mode is about twice the memory of a list of Strings. Sorting the
+ * same store again doesn't read its items.
+ */
+class PickerUISorter {
+
+    private static final ExecutorService executor = Executors
+        .newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PickerUI-sort");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private static final String EMPTY_STRING = "";
+
+    private final Handler    mainHandler = new Handler(Looper.getMainLooper());
+    private final SortListener listener;
+    private final AtomicInteger readers = new AtomicInteger();
+    private volatile int generation;
+
+    //Only used in the background thread
+    private Locale             keyLocale;
+    private PickerUILabelStore keyedStore;
+    private CollationKey[]     keys  = new CollationKey[0];
+    private int[]              order = new int[0];
+
+    PickerUISorter(SortListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts to sort the items, cancelling the previous request. If they are an update of the
+     * items sorted before, only the items which have changed are sorted again.
+     *
+     * @param items the items to sort
+     */
+    void sort(final List<String> items) {
+        final int sortGeneration = ++generation;
+        final Locale locale = Locale.getDefault();
+
+        readers.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sort(items, locale, sortGeneration);
+                } finally {
+                    readers.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private void sort(final List<String> items, Locale locale, final int sortGeneration) {
+        if (sortGeneration != generation) {
+            return;
+        }
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        if (!update(items, locale, sortGeneration)) {
+            return;
+        }
+        final int[] rows = order;
+        final int[] ranks = new int[rows.length];
+        for (int row = 0; row < rows.length; row++) {
+            ranks[rows[row]] = row;
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (sortGeneration == generation) {
+                    listener.onSortResults(items, rows, ranks);
+                }
+            }
+        });
+    }
+
+    /**
+     * Indicates whether a sort is reading the items in background. A cancelled sort reads them
+     * until it notices it.
+     *
+     * @return true if the items mustn't be modified
+     */
+    boolean isReading() {
+        return readers.get() > 0;
+    }
+
+    /**
+     * Cancels the sort in progress, if any. Its results aren't published.
+     */
+    void cancel() {
+        generation++;
+    }
+
+    /**
+     * Cancels the sort in progress and removes the keys. The next sort computes all of them.
+     */
+    void clear() {
+        cancel();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                reset();
+            }
+        });
+    }
+
+    /**
+     * Removes the keys when the system asks for it. They are computed again in the next sort.
+     *
+     * @param level the level given to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    void trimMemory(int level) {
+        if (CacheTrimmer.shouldClear(level)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    reset();
+                }
+            });
+        }
+    }
+
+    /**
+     * Updates the keys and the order for the new items.
+     *
+     * @return false if the sort has been cancelled
+     */
+    private boolean update(List<String> items, Locale locale, int sortGeneration) {
+        if (!locale.equals(keyLocale)) {
+            reset();
+            keyLocale = locale;
+        }
+        if (items == keyedStore) {
+            //The store is immutable, so the order is still valid
+            return true;
+        }
+        Collator collator = Collator.getInstance(locale);
+
+        int size = items.size();
+        int oldSize = keys.length;
+        final CollationKey[] newKeys = new CollationKey[size];
+        boolean[] changed = new boolean[Math.max(size, oldSize)];
+        int changedCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            if ((i & 0xff) == 0 && sortGeneration != generation) {
+                return false;
+            }
+            String item = items.get(i);
+            if (item == null) {
+                item = EMPTY_STRING;
+            }
+            if (i < oldSize && item.equals(keys[i].getSourceString())) {
+                newKeys[i] = keys[i];
+            }
+            else {
+                newKeys[i] = collator.getCollationKey(item);
+                changed[i] = true;
+                changedCount++;
+            }
+        }
+        for (int i = size; i < oldSize; i++) {
+            changed[i] = true;
+        }
+
+        Comparator<Integer> comparator = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return compareItems(newKeys, lhs, rhs);
+            }
+        };
+
+        //The changed items are sorted among them, and merged with the rest of the old order
+        Integer[] changedItems = new Integer[changedCount];
+        for (int i = 0, j = 0; i < size; i++) {
+            if (changed[i]) {
+                changedItems[j++] = i;
+            }
+        }
+        Arrays.sort(changedItems, comparator);
+        if (sortGeneration != generation) {
+            return false;
+        }
+
+        int[] newOrder = new int[size];
+        int row = 0;
+        int next = 0;
+        for (int oldItem : order) {
+            if (changed[oldItem]) {
+                continue;
+            }
+            while (next < changedCount && compareItems(newKeys, changedItems[next], oldItem) < 0) {
+                newOrder[row++] = changedItems[next++];
+            }
+            newOrder[row++] = oldItem;
+        }
+        while (next < changedCount) {
+            newOrder[row++] = changedItems[next++];
+        }
+
+        keyedStore = items instanceof PickerUILabelStore ? (PickerUILabelStore) items : null;
+        keys = newKeys;
+        order = newOrder;
+        return true;
+    }
+
+    /**
+     * Removes the keys and the order. Only in the background thread.
+     */
+    private void reset() {
+        keyLocale = null;
+        keyedStore = null;
+        keys = new CollationKey[0];
+        order = new int[0];
+    }
+
+    /**
+     * Items with the same key keep the order of their indexes.
+     */
+    private static int compareItems(CollationKey[] keys, int lhs, int rhs) {
+        int result = keys[lhs].compareTo(keys[rhs]);
+        return result != 0 ? result : lhs - rhs;
+    }
+
+    /**
+     * Interface for a callback when the items have been sorted.
+     */
+    interface SortListener {
+
+        /**
+         * Callback in the main thread with the order of the items.
+         *
+         * @param items the items sorted
+         * @param rows  the indexes of the items in the order of the rows
+         * @param ranks the row of each item, by index
+         */
+        void onSortResults(List<String> items, int[] rows, int[] ranks);
+    }
+}
@@ -0,0 +1,151 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.view.Choreographer;
+
+import java.util.List;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Queue of changes of the items which can be posted from any thread.
+ * <p>
+ * The changes are merged until the next frame: a new list replaces the previous one and the
+ * changes of the previous list, and a new value of an item replaces the previous value. Then all
+ * of them are given at once to the listener in the main thread.
+ */
+class PickerUIUpdateQueue {
+
+    private final Handler        mainHandler = new Handler(Looper.getMainLooper());
+    private final UpdateListener listener;
+    private final Object         lock = new Object();
+
+    private List<String>       pendingItems;
+    private SparseArray<String> pendingChanges = new SparseArray<String>();
+    private SparseArray<String> appliedChanges = new SparseArray<String>();
+    private boolean            scheduled;
+
+    private final Choreographer.FrameCallback mApplyCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            apply();
+        }
+    };
+
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(mApplyCallback);
+        }
+    };
+
+    /**
+     * @param listener the listener to apply the changes in the main thread
+     */
+    PickerUIUpdateQueue(UpdateListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Posts a new list of items, which replaces the items and the changes posted before.
+     *
+     * @param items the new items
+     */
+    void postItems(List<String> items) {
+        synchronized (lock) {
+            pendingItems = items;
+            pendingChanges.clear();
+            schedule();
+        }
+    }
+
+    /**
+     * Posts a new value of an item.
+     *
+     * @param position the position of the item
+     * @param value    the new value of the item
+     */
+    void postItem(int position, String value) {
+        synchronized (lock) {
+            pendingChanges.put(position, value);
+            schedule();
+        }
+    }
+
+    /**
+     * Removes the pending changes, when the items are set directly.
+     */
+    void clear() {
+        synchronized (lock) {
+            pendingItems = null;
+            pendingChanges.clear();
+        }
+    }
+
+    /**
+     * Must be called with the lock.
+     */
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            //The Choreographer belongs to the thread, so the frame is requested from the main one.
+            //It doesn't depend on the view, which may not be attached yet
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                mScheduleRunnable.run();
+            }
+            else {
+                mainHandler.post(mScheduleRunnable);
+            }
+        }
+    }
+
+    private void apply() {
+        List<String> items;
+        SparseArray<String> changes;
+        synchronized (lock) {
+            scheduled = false;
+            items = pendingItems;
+            pendingItems = null;
+
+            //The arrays are swapped to not allocate a new one on each frame
+            changes = pendingChanges;
+            pendingChanges = appliedChanges;
+            appliedChanges = changes;
+        }
+
+        if (items != null || changes.size() > 0) {
+            listener.onUpdates(items, changes);
+        }
+        changes.clear();
+    }
+
+    /**
+     * Interface for a callback with the changes merged in a frame.
+     */
+    interface UpdateListener {
+
+        /**
+         * Callback in the main thread with the changes received since the last frame.
+         *
+         * @param items   the new items, or null if the list hasn't been replaced
+         * @param changes the new values of the items, by position, applied after the new items
+         */
+        void onUpdates(List<String> items, SparseArray<String> changes);
+    }
+}
@@ -0,0 +1,207 @@
+package com.dpizarro.uipicker.library.picker;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Heights of the rows when they can have different heights.
+ * <p>
+ * The height of each item is measured once for a width and kept by its index. The distance
+ * between the tops of the rows (height plus divider) is kept in a Fenwick tree, so the top of a
+ * row and the row at a distance are found in O(log n) while scrolling. Rows which haven't been
+ * measured yet have the default height.
+ */
+class RowHeights {
+
+    private final int divider;
+    private int   defaultHeight;
+    private int   width;
+    private int[] itemHeights = new int[0];
+
+    private int[]  rowItems;
+    private int    rowCount;
+    private int[]  pitches = new int[0];
+    private long[] tree    = new long[1];
+    private long   total;
+
+    /**
+     * @param defaultHeight the height of the rows which haven't been measured
+     * @param divider       the height of the divider between rows
+     */
+    RowHeights(int defaultHeight, int divider) {
+        this.defaultHeight = defaultHeight;
+        this.divider = divider;
+    }
+
+    /**
+     * @return the distance between the tops of two rows which haven't been measured
+     */
+    int getDefaultPitch() {
+        return defaultHeight + divider;
+    }
+
+    /**
+     * Sets the width of the rows. If it changes, the heights measured before are removed.
+     *
+     * @param width the width in pixels
+     * @return if the width has changed
+     */
+    boolean setWidth(int width) {
+        if (this.width == width) {
+            return false;
+        }
+        this.width = width;
+        Arrays.fill(itemHeights, 0);
+        rebuild();
+        return true;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Sets the default height and removes the heights measured before.
+     *
+     * @param defaultHeight the height of the rows which haven't been measured
+     */
+    void setDefaultHeight(int defaultHeight) {
+        this.defaultHeight = defaultHeight;
+        Arrays.fill(itemHeights, 0);
+        rebuild();
+    }
+
+    /**
+     * Sets the rows shown. The heights already measured are kept if the items are the same.
+     *
+     * @param itemCount  the number of items
+     * @param rowItems   the index of the item of each row, or null if each row shows the item with
+     *                   the same index. The array isn't copied.
+     * @param rowCount   the number of rows
+     * @param sameItems  if the items are the same as before
+     */
+    void setRows(int itemCount, int[] rowItems, int rowCount, boolean sameItems) {
+        if (!sameItems || itemHeights.length != itemCount) {
+            itemHeights = new int[itemCount];
+        }
+        this.rowItems = rowItems;
+        this.rowCount = rowCount;
+        rebuild();
+    }
+
+    /**
+     * @param item the index of the item
+     * @return the height measured for the item, or 0 if it hasn't been measured
+     */
+    int getItemHeight(int item) {
+        return item < itemHeights.length ? itemHeights[item] : 0;
+    }
+
+    /**
+     * Saves the height measured for the item of a row.
+     *
+     * @param row    the row of the item
+     * @param height the height in pixels
+     */
+    void setRowHeight(int row, int height) {
+        int item = rowItems != null ? rowItems[row] : row;
+        itemHeights[item] = height;
+        int pitch = height + divider;
+        int delta = pitch - pitches[row];
+        if (delta != 0) {
+            pitches[row] = pitch;
+            total += delta;
+            for (int i = row + 1; i <= rowCount; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * @param row the row
+     * @return the distance between the top of the row and the top of the next one
+     */
+    int getPitch(int row) {
+        return pitches[row];
+    }
+
+    /**
+     * @param row the row, between 0 and the number of rows
+     * @return the distance between the top of the first row and the top of the row
+     */
+    long getTop(int row) {
+        long top = 0;
+        for (int i = row; i > 0; i -= i & -i) {
+            top += tree[i];
+        }
+        return top;
+    }
+
+    /**
+     * @return the distance between the top of the first row and the bottom of the last one
+     */
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Finds the row which contains a distance from the top of the first row.
+     *
+     * @param y the distance, between 0 and {@link #getTotal()}
+     * @return the row
+     */
+    int findRow(long y) {
+        int row = 0;
+        for (int step = Integer.highestOneBit(Math.max(1, rowCount)); step > 0; step >>= 1) {
+            int next = row + step;
+            if (next <= rowCount && tree[next] <= y) {
+                row = next;
+                y -= tree[next];
+            }
+        }
+        return Math.min(row, rowCount - 1);
+    }
+
+    /**
+     * Builds the tree in O(n) from the heights of the items.
+     */
+    private void rebuild() {
+        if (pitches.length != rowCount) {
+            pitches = new int[rowCount];
+            tree = new long[rowCount + 1];
+        }
+        else {
+            Arrays.fill(tree, 0);
+        }
+
+        total = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int item = rowItems != null ? rowItems[row] : row;
+            int height = item < itemHeights.length ? itemHeights[item] : 0;
+            pitches[row] = (height > 0 ? height : defaultHeight) + divider;
+            total += pitches[row];
+
+            int i = row + 1;
+            tree[i] += pitches[row];
+            int parent = i + (i & -i);
+            if (parent <= rowCount) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Text sizes which fit the items in the width of the rows, for the auto-fit mode.
+ * <p>
+ * The size of an item is searched once for each style of the tiers, measuring the text with a
+ * paint, and kept in a direct-mapped cache: an entry is found with one lookup and replaced when
+ * another item takes its slot, so the cache never grows and binding a row doesn't allocate. The
+ * cache is emptied when the width of the rows or the items change. Empty texts aren't cached.
+ */
+class TextFitCache {
+
+    /**
+     * Number of entries, a power of two. It's enough for the visible rows in all the tiers.
+     */
+    private static final int CAPACITY = 256;
+
+    /**
+     * Decrement of the text size in pixels while the text doesn't fit.
+     */
+    private static final float STEP = 0.5f;
+
+    /**
+     * Number of styles with their own ordinal, one for each tier and the wheel style.
+     */
+    private static final int TIERS = 5;
+
+    private static final long NO_KEY = -1;
+
+    private final long[]    keys  = new long[CAPACITY];
+    private final float[]   sizes = new float[CAPACITY];
+    private final int[]     tierStyles = new int[TIERS];
+    private final TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+    private final float minTextSize;
+    private int tierCount;
+    private int width;
+
+    /**
+     * @param minTextSize the minimum text size in pixels. Texts which don't fit with it are
+     *                    ellipsized.
+     */
+    TextFitCache(float minTextSize) {
+        this.minTextSize = minTextSize;
+        clear();
+    }
+
+    /**
+     * Removes all the sizes, when the items change.
+     */
+    void clear() {
+        Arrays.fill(keys, NO_KEY);
+    }
+
+    /**
+     * Sets the width of the rows. If it changes, the sizes found before are removed.
+     *
+     * @param width the width in pixels
+     */
+    void setWidth(int width) {
+        if (this.width != width) {
+            this.width = width;
+            clear();
+        }
+    }
+
+    /**
+     * Gets the text size which fits an item in a width, searching it only if it isn't in the
+     * cache.
+     *
+     * @param index      the index of the item
+     * @param styleRes   the style of the tier of the item
+     * @param style      the resolved style
+     * @param typeFace   the font of the items, or null to use the default font
+     * @param text       the text of the item
+     * @param textWidth  the width available for the text in pixels
+     * @return the text size in pixels
+     */
+    float getTextSize(int index, int styleRes, ItemTextStyle style, Typeface typeFace,
+                      CharSequence text, int textWidth) {
+        long key = getKey(index, styleRes);
+        int slot = getSlot(index, styleRes);
+        if (keys[slot] == key) {
+            return sizes[slot];
+        }
+
+        float size = findTextSize(style, typeFace, text, textWidth);
+        //An empty text may be an item which isn't loaded yet, like in PickerUICursorItems: its
+        //size is searched again when the text arrives
+        if (text.length() > 0) {
+            keys[slot] = key;
+            sizes[slot] = size;
+        }
+        return size;
+    }
+
+    /**
+     * Indicates whether the size of an item is in the cache.
+     *
+     * @param index    the index of the item
+     * @param styleRes the style of the tier of the item
+     * @return true if the size won't be searched again
+     */
+    boolean isCached(int index, int styleRes) {
+        return keys[getSlot(index, styleRes)] == getKey(index, styleRes);
+    }
+
+    private static long getKey(int index, int styleRes) {
+        return ((long) index << 32) | (styleRes & 0xffffffffL);
+    }
+
+    /**
+     * Consecutive items are spread over the slots by the high bits of their hash, so the items in
+     * 24 rows are at least 5 slots apart, and each tier takes the next slot of the item. The index
+     * and the style aren't mixed in one hash: the ids of the styles are consecutive, so a row and
+     * the next one in the next tier would share the slot.
+     */
+    private int getSlot(int index, int styleRes) {
+        return ((index * 0x9E3779B9 >>> 24) + getTier(styleRes)) & (CAPACITY - 1);
+    }
+
+    /**
+     * Gets the ordinal of a style, in the order in which the styles are used.
+     */
+    private int getTier(int styleRes) {
+        for (int i = 0; i < tierCount; i++) {
+            if (tierStyles[i] == styleRes) {
+                return i;
+            }
+        }
+        if (tierCount < TIERS) {
+            tierStyles[tierCount] = styleRes;
+            return tierCount++;
+        }
+        return styleRes;
+    }
+
+    /**
+     * The width of the text is almost proportional to its size, so the search starts in the
+     * proportional size and only a few steps are measured.
+     */
+    private float findTextSize(ItemTextStyle style, Typeface typeFace, CharSequence text,
+                               int textWidth) {
+        style.apply(paint, typeFace);
+        float size = paint.getTextSize();
+        int length = text.length();
+        if (length == 0 || textWidth <= 0) {
+            return size;
+        }
+
+        float measuredWidth = paint.measureText(text, 0, length);
+        if (measuredWidth <= textWidth) {
+            return size;
+        }
+
+        size = Math.max(minTextSize, size * textWidth / measuredWidth);
+        paint.setTextSize(size);
+        while (size > minTextSize && paint.measureText(text, 0, length) > textWidth) {
+            size = Math.max(minTextSize, size - STEP);
+            paint.setTextSize(size);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,178 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.dpizarro.uipicker.library.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * {@link PickerUICursorItems} over a query of an in-memory SQLite database.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, packageName = "com.dpizarro.uipicker.library")
+public class PickerUICursorItemsTest {
+
+    private static final int  ROWS        = 1000;
+    private static final int  WINDOW_SIZE = 64;
+    private static final long TIMEOUT_MS  = 5000;
+
+    /**
+     * Time to let a stale request run in background before checking that it's dropped.
+     */
+    private static final long STALE_WAIT_MS = 300;
+
+    private SQLiteDatabase      database;
+    private Cursor              cursor;
+    private PickerUICursorItems items;
+    private int                 windowLoads;
+
+    @Before
+    public void setUp() {
+        database = SQLiteDatabase.create(null);
+        database.execSQL("CREATE TABLE items (name TEXT)");
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                database.execSQL("INSERT INTO items (name) VALUES (?)",
+                    new Object[]{i == ROWS - 1 ? null : "Item " + i});
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        cursor = database.rawQuery("SELECT name FROM items ORDER BY rowid", null);
+        items = new PickerUICursorItems(cursor, cursor.getColumnIndexOrThrow("name"),
+            WINDOW_SIZE);
+        items.setWindowListener(new Runnable() {
+            @Override
+            public void run() {
+                windowLoads++;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        items.close();
+        database.close();
+    }
+
+    @Test
+    public void sizeIsTheNumberOfRows() {
+        assertEquals(ROWS, items.size());
+    }
+
+    @Test
+    public void itemsOutOfTheWindowAreLoadedInBackground() throws InterruptedException {
+        //Nothing is read in the main thread: the window is loaded and the panel refreshed
+        assertEquals("", items.get(500));
+        waitForLoads(1);
+        assertEquals(1, windowLoads);
+        assertEquals("Item 500", items.get(500));
+        assertEquals("Item " + (500 - WINDOW_SIZE / 2), items.get(500 - WINDOW_SIZE / 2));
+
+        //Near the edge of the window, the next rows are loaded before they are reached
+        int edge = 500 + WINDOW_SIZE / 2 - 1;
+        assertEquals("Item " + edge, items.get(edge));
+        waitForLoads(2);
+        assertEquals(2, windowLoads);
+        assertEquals("Item " + (edge + WINDOW_SIZE / 4), items.get(edge + WINDOW_SIZE / 4));
+    }
+
+    @Test
+    public void aStaleRequestDoesNotReplaceTheWindow() throws InterruptedException {
+        items.get(500);
+        waitForLoads(1);
+
+        //A far window is requested and the user comes back before it's loaded
+        assertEquals("", items.get(900));
+        assertEquals("Item 500", items.get(500));
+        idleFor(STALE_WAIT_MS);
+
+        assertEquals(1, windowLoads);
+        assertEquals("Item 500", items.get(500));
+    }
+
+    @Test
+    public void backgroundThreadsReadTheCursor() throws InterruptedException {
+        final String[] read = new String[2];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read[0] = items.get(10);
+                read[1] = items.get(ROWS - 1);
+            }
+        });
+        thread.start();
+        thread.join(TIMEOUT_MS);
+
+        assertEquals("Item 10", read[0]);
+        //A null value is an empty item
+        assertEquals("", read[1]);
+        assertEquals(0, windowLoads);
+    }
+
+    @Test
+    public void closeClosesTheCursorAndStopsLoading() throws InterruptedException {
+        items.get(500);
+        waitForLoads(1);
+
+        items.close();
+        assertTrue(cursor.isClosed());
+
+        //The rows in memory are kept, the others are empty and never loaded
+        assertEquals("Item 500", items.get(500));
+        assertEquals("", items.get(100));
+        idleFor(STALE_WAIT_MS);
+        assertEquals(1, windowLoads);
+        assertEquals("", items.get(100));
+    }
+
+    /**
+     * Runs the main looper until the window has been loaded the expected times.
+     */
+    private void waitForLoads(int loads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (windowLoads < loads && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.idleMainLooper();
+        }
+        assertTrue("The window wasn't loaded", windowLoads >= loads);
+    }
+
+    private void idleFor(long timeMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeMs;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.idleMainLooper();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.database.DataSetObserver;
+import android.graphics.Color;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.TextView;
+
+import com.dpizarro.uipicker.library.BuildConfig;
+import com.dpizarro.uipicker.library.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.robolectric.Shadows.shadowOf;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Allocations of the scroll path of {@link PickerUIListView}.
+ * <p>
+ * A fling is scripted over a large list, frame by frame. The objects which used to be created
+ * while binding, scrolling and settling are checked by count: rows inflated, text colors, adapter
+ * notifications and pending selection notifications. The bytes aren't measured: the shadows of
+ * Robolectric allocate much more than a device, so a budget loose enough for them wouldn't catch
+ * a regression.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, packageName = "com.dpizarro.uipicker.library")
+public class PickerUIListViewAllocationTest {
+
+    private static final int ITEMS   = 100000;
+    private static final int BINDS   = 2000;
+    private static final int SETTLES = 50;
+
+    /**
+     * Scroll of the first frame of the fling, in rows, and deceleration per frame.
+     */
+    private static final float FLING_ROWS_PER_FRAME = 3f;
+    private static final float FLING_FRICTION       = 0.95f;
+
+    private PickerUIListView             listView;
+    private PickerUIAdapter              adapter;
+    private CountingRowPool              rowPool;
+    private AbsListView.OnScrollListener scrollListener;
+    private int rowPitch;
+    private int changedCount;
+    private int notifiedCount;
+    private int notifiedIndex;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        listView = new PickerUIListView(activity);
+        rowPool = new CountingRowPool();
+        listView.setRowPool(rowPool);
+        rowPitch = listView.getRowPitch();
+        int visibleRows = 2 * PickerUIAdapter.DEFAULT_EMPTY_ROWS + 1;
+        activity.setContentView(listView,
+            new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                rowPitch * visibleRows));
+
+        PickerUILabelStore.Builder builder = new PickerUILabelStore.Builder(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            builder.add("Item " + i);
+        }
+        listView.setItems(activity, builder.build(), 0, ITEMS / 2, true, "");
+        listView.setOnClickItemPickerUIListener(
+            new PickerUIListView.PickerUIItemClickListener() {
+                @Override
+                public void onItemClickItemPickerUI(int which, int position, String valueResult) {
+                    notifiedCount++;
+                    notifiedIndex = position;
+                }
+            });
+
+        adapter = listView.getPickerUIAdapter();
+        adapter.setColorTextCenter(Color.BLACK);
+        adapter.setColorTextNoCenter(Color.GRAY);
+        adapter.registerDataSetObserver(new DataSetObserver() {
+            @Override
+            public void onChanged() {
+                changedCount++;
+            }
+        });
+        scrollListener = shadowOf(listView).getOnScrollListener();
+        layoutList();
+    }
+
+    @Test
+    public void bindingARecycledRowDoesNotInflateOrCreateColors() {
+        View row = adapter.getView(0, null, listView);
+        TextView textItem = (TextView) row.findViewById(R.id.tv_item);
+
+        //The first binds load classes and resolve the styles
+        bindRows(row, ITEMS / 2);
+        ColorStateList colors = textItem.getTextColors();
+        int acquired = rowPool.acquired;
+
+        bindRows(row, ITEMS / 4);
+
+        assertEquals("Binding inflated rows", acquired, rowPool.acquired);
+        assertSame("Binding created a ColorStateList", colors, textItem.getTextColors());
+    }
+
+    @Test
+    public void flingReusesRowsAndDoesNotNotifyTheAdapter() {
+        //The first fling fills the recycler
+        fling();
+        int acquired = rowPool.acquired;
+
+        fling();
+
+        assertEquals("Scrolling inflated rows", acquired, rowPool.acquired);
+        assertEquals("Center changes notified the adapter", 0, changedCount);
+    }
+
+    @Test
+    public void settlesReplaceThePendingNotification() {
+        Scheduler scheduler = ShadowLooper.getUiThreadScheduler();
+        settle();
+        int pending = scheduler.size();
+        int acquired = rowPool.acquired;
+
+        for (int i = 0; i < SETTLES; i++) {
+            settle();
+        }
+
+        assertEquals("Settles left pending notifications", pending, scheduler.size());
+        assertEquals("Settles notified the adapter", 0, changedCount);
+        assertEquals("Settles inflated rows", acquired, rowPool.acquired);
+
+        //Only the last settle is notified
+        int centerIndex = listView.getItemInListCenter();
+        ShadowLooper.idleMainLooper(1000);
+        assertEquals(1, notifiedCount);
+        assertEquals(centerIndex, notifiedIndex);
+    }
+
+    private void bindRows(View row, int firstPosition) {
+        for (int i = 0; i < BINDS; i++) {
+            assertSame(row, adapter.getView(firstPosition + i, row, listView));
+        }
+    }
+
+    /**
+     * Scrolls the list frame by frame with a decreasing speed, like a fling.
+     */
+    private void fling() {
+        for (float speed = FLING_ROWS_PER_FRAME * rowPitch; speed >= 1; speed *= FLING_FRICTION) {
+            listView.scrollListBy((int) speed);
+            scrollListener.onScroll(listView, listView.getFirstVisiblePosition(),
+                listView.getChildCount(), adapter.getCount());
+        }
+    }
+
+    /**
+     * Scrolls one row and a half and stops, so the list snaps to the closest row.
+     */
+    private void settle() {
+        listView.scrollListBy(rowPitch + rowPitch / 2);
+        scrollListener.onScroll(listView, listView.getFirstVisiblePosition(),
+            listView.getChildCount(), adapter.getCount());
+        scrollListener.onScrollStateChanged(listView,
+            AbsListView.OnScrollListener.SCROLL_STATE_IDLE);
+        layoutList();
+    }
+
+    private void layoutList() {
+        int width = 480;
+        int height = listView.getLayoutParams().height;
+        listView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+            View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        listView.layout(0, 0, width, height);
+    }
+
+    /**
+     * Pool which counts the rows given to the lists, inflated or reused.
+     */
+    private static class CountingRowPool extends PickerUIRowPool {
+
+        int acquired;
+
+        @Override
+        View acquireRow(Context context, ViewGroup parent) {
+            acquired++;
+            return super.acquireRow(context, parent);
+        }
+    }
+}
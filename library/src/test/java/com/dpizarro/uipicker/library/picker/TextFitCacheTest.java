@@ -0,0 +1,108 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.content.Context;
+
+import com.dpizarro.uipicker.library.BuildConfig;
+import com.dpizarro.uipicker.library.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Slots of {@link TextFitCache}: the sizes of the visible rows in all the tiers must stay in the
+ * cache, so each text is searched once.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, packageName = "com.dpizarro.uipicker.library")
+public class TextFitCacheTest {
+
+    private static final int[] STYLES = {
+        R.style.PickerUI_Center_Item,
+        R.style.PickerUI_Near_Center_Item,
+        R.style.PickerUI_Far_Center_Item,
+        R.style.PickerUI_Small_Item,
+        R.style.PickerUI_Wheel_Item
+    };
+
+    private static final int TEXT_WIDTH = 200;
+
+    private TextFitCache    cache;
+    private ItemTextStyle[] styles;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        cache = new TextFitCache(1);
+        cache.setWidth(TEXT_WIDTH);
+        styles = new ItemTextStyle[STYLES.length];
+        for (int i = 0; i < STYLES.length; i++) {
+            styles[i] = ItemTextStyle.resolve(context, STYLES[i]);
+        }
+    }
+
+    @Test
+    public void adjacentRowsInAdjacentTiersStayCached() {
+        fit(10, 0);
+        fit(11, 1);
+        assertTrue(cache.isCached(10, STYLES[0]));
+        assertTrue(cache.isCached(11, STYLES[1]));
+    }
+
+    @Test
+    public void visibleRowsInAllTheTiersStayCached() {
+        //The rows move between tiers while the list scrolls
+        for (int first = 1000; first < 1100; first++) {
+            for (int index = first; index < first + 11; index++) {
+                for (int tier = 0; tier < STYLES.length; tier++) {
+                    fit(index, tier);
+                }
+            }
+            for (int index = first; index < first + 11; index++) {
+                for (int tier = 0; tier < STYLES.length; tier++) {
+                    assertTrue("Row " + index + " in tier " + tier + " was evicted",
+                        cache.isCached(index, STYLES[tier]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyTextsAreNotCached() {
+        cache.getTextSize(10, STYLES[0], styles[0], null, "", TEXT_WIDTH);
+        assertFalse(cache.isCached(10, STYLES[0]));
+    }
+
+    @Test
+    public void aNewWidthEmptiesTheCache() {
+        fit(10, 0);
+        cache.setWidth(TEXT_WIDTH / 2);
+        assertFalse(cache.isCached(10, STYLES[0]));
+    }
+
+    private void fit(int index, int tier) {
+        cache.getTextSize(index, STYLES[tier], styles[tier], null, "Item " + index, TEXT_WIDTH);
+    }
+}